@@ -0,0 +1,151 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Applies the ledger side of ordered transactions, in parallel where the order between them does not matter.
+// Deposits and addInterest on one currency only touch that currency's balance, only addInterest on all
+// currencies depends on everything before it. Those are barriers, a run between two barriers is split into one
+// sub-stream per currency and the sub-streams are applied in parallel with fork-join, each in its original order.
+// Every balance only depends on its own sub-stream, so the ledger ends up bit-identical to applying the run one by one.
+// The balance hash of the ledger is a plain sum, every task adds up the change of its currencies and the sums are
+// added to the ledger at the end
+public class ApplyScheduler {
+
+    // Entries one fork-join task applies before it stops splitting
+    private static final int TASK_GRAIN = 2048;
+
+    private final ForkJoinPool pool;
+    private final int parallelThreshold; // shorter runs are applied on the calling thread
+
+    public ApplyScheduler(int parallelThreshold) {
+        this(ForkJoinPool.commonPool(), parallelThreshold);
+    }
+
+    public ApplyScheduler(ForkJoinPool pool, int parallelThreshold) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    // True for transactions that depend on every currency and end a run
+    public static boolean isBarrier(Transaction transaction) {
+        return switch (transaction.opcode()) {
+            case ADD_INTEREST -> transaction.currency() == null;
+            case DEPOSIT, RAW -> false;
+        };
+    }
+
+    // End (exclusive) of the run of non-barrier entries starting at from
+    public static int runEnd(List<Transaction> entries, int from) {
+        int end = from;
+        while (end < entries.size() && !isBarrier(entries.get(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    // Applies entries [from, to), none of which is a barrier. Entry i changed the ledger if applied[i - from] is
+    // set, RAW commands and unknown currencies are left alone, they fail the same way on every replica
+    public boolean[] applyRun(CurrencyLedger ledger, List<Transaction> entries, int from, int to) {
+        int length = to - from;
+        boolean[] applied = new boolean[length];
+        int[] currencyIds = new int[length];
+        for (int k = 0; k < length; k++) {
+            Transaction transaction = entries.get(from + k);
+            currencyIds[k] = transaction.opcode() == Transaction.Opcode.RAW ? -1 : ledger.idOf(transaction.currency());
+            applied[k] = currencyIds[k] >= 0;
+        }
+
+        long hashDelta = 0;
+        if (length < parallelThreshold) {
+            for (int k = 0; k < length; k++) {
+                if (applied[k]) {
+                    long before = ledger.contribution(currencyIds[k]);
+                    applyBalance(ledger, entries.get(from + k), currencyIds[k]);
+                    hashDelta += ledger.contribution(currencyIds[k]) - before;
+                }
+            }
+        }
+        else {
+            // Counting sort by currency, entries keep their order within a currency.
+            // Entries of currency id are order[starts[id]] .. order[starts[id + 1] - 1]
+            int[] starts = new int[ledger.size() + 1];
+            for (int k = 0; k < length; k++) {
+                if (applied[k]) {
+                    starts[currencyIds[k] + 1]++;
+                }
+            }
+            for (int id = 0; id < ledger.size(); id++) {
+                starts[id + 1] += starts[id];
+            }
+            int[] order = new int[starts[ledger.size()]];
+            int[] next = starts.clone();
+            for (int k = 0; k < length; k++) {
+                if (applied[k]) {
+                    order[next[currencyIds[k]]++] = k;
+                }
+            }
+            hashDelta = pool.invoke(new RunTask(ledger, entries, from, order, starts, 0, ledger.size()));
+        }
+
+        ledger.addToBalanceHash(hashDelta);
+        return applied;
+    }
+
+    // Balance change of one entry
+    private static void applyBalance(CurrencyLedger ledger, Transaction transaction, int id) {
+        if (transaction.opcode() == Transaction.Opcode.DEPOSIT) {
+            ledger.depositBalance(id, transaction.amount());
+        }
+        else {
+            ledger.addInterestBalance(id, transaction.amount());
+        }
+    }
+
+    // Applies the sub-streams of currencies [low, high), splitting the range while it holds too many entries.
+    // Returns how much the balance hash of those currencies changed. Never serialized, ForkJoinTask just is Serializable
+    @SuppressWarnings("serial")
+    private static final class RunTask extends RecursiveTask<Long> {
+        private final CurrencyLedger ledger;
+        private final List<Transaction> entries;
+        private final int from;
+        private final int[] order;
+        private final int[] starts;
+        private final int low;
+        private final int high;
+
+        RunTask(CurrencyLedger ledger, List<Transaction> entries, int from, int[] order, int[] starts,
+                int low, int high) {
+            this.ledger = ledger;
+            this.entries = entries;
+            this.from = from;
+            this.order = order;
+            this.starts = starts;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected Long compute() {
+            if (high - low == 1 || starts[high] - starts[low] <= TASK_GRAIN) {
+                long hashDelta = 0;
+                for (int id = low; id < high; id++) {
+                    if (starts[id] == starts[id + 1]) {
+                        continue;
+                    }
+                    long before = ledger.contribution(id);
+                    for (int i = starts[id]; i < starts[id + 1]; i++) {
+                        int k = order[i];
+                        applyBalance(ledger, entries.get(from + k), id);
+                    }
+                    hashDelta += ledger.contribution(id) - before;
+                }
+                return hashDelta;
+            }
+            int middle = (low + high) >>> 1;
+            RunTask left = new RunTask(ledger, entries, from, order, starts, low, middle);
+            left.fork();
+            long right = new RunTask(ledger, entries, from, order, starts, middle, high).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -4,8 +4,26 @@ public record BankConfig(
         String accountName,             // The name of the bank account associated with this server
         int numberOfReplicas,           // Number of replica servers 
         String currencyFileName,        // File containing currencies
-        String transactionFileName      // File containing predifined transactions
+        String transactionFileName,     // File containing predifined transactions
+        int flushBatchSize,             // Outstanding transactions that trigger a send to the MDS
+        long flushLingerMillis,         // Longest a transaction waits before it is sent to the MDS
+        ResultLogger.Durability logDurability, // When lines of the results file are forced to disk
+        String dataDirectory,           // Where the WAL and checkpoints go, null to keep state in memory only
+        long checkpointInterval,        // Ordered transactions between two checkpoints
+        int parallelApplyThreshold      // Shortest run of single currency transactions applied in parallel
 ) {
+    // Outbox thresholds, override with -Dbank.flush.batchSize=<n> and -Dbank.flush.lingerMs=<ms>
+    public static final int DEFAULT_FLUSH_BATCH_SIZE = Integer.getInteger("bank.flush.batchSize", 16);
+    public static final long DEFAULT_FLUSH_LINGER_MILLIS = Long.getLong("bank.flush.lingerMs", 200);
+    // Results file durability, override with -Dbank.log.durability=os|batch
+    public static final ResultLogger.Durability DEFAULT_LOG_DURABILITY =
+            ResultLogger.Durability.valueOf(System.getProperty("bank.log.durability", "os").toUpperCase());
+    // Crash recovery is off unless a data directory is given with -Dbank.dataDir=<dir>, every bank uses <dir>/<bankBindingName>
+    public static final String DEFAULT_DATA_DIRECTORY = System.getProperty("bank.dataDir");
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = Long.getLong("bank.checkpoint.interval", 1000);
+    // Shorter runs are applied on the apply thread, override with -Dbank.apply.parallelThreshold=<n>
+    public static final int DEFAULT_PARALLEL_APPLY_THRESHOLD = Integer.getInteger("bank.apply.parallelThreshold", 4096);
+
     // Creates a BankConfig instance by parsing cmd line arguments
     public static BankConfig fromArgs(String[] args) {
         if (args.length < 5 || args.length > 6) {
@@ -19,7 +37,13 @@ public record BankConfig(
                 args[2],                            //accountName
                 Integer.parseInt(args[3]),          //numberOfReplicas
                 args[4],                            //currencyFileName
-                args.length == 6 ? args[5] : null   //transactionFileName
+                args.length == 6 ? args[5] : null,  //transactionFileName
+                DEFAULT_FLUSH_BATCH_SIZE,           //flushBatchSize
+                DEFAULT_FLUSH_LINGER_MILLIS,        //flushLingerMillis
+                DEFAULT_LOG_DURABILITY,             //logDurability
+                DEFAULT_DATA_DIRECTORY,             //dataDirectory
+                DEFAULT_CHECKPOINT_INTERVAL,        //checkpointInterval
+                DEFAULT_PARALLEL_APPLY_THRESHOLD    //parallelApplyThreshold
         );
     }
 }
@@ -1,39 +1,47 @@
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.rmi.RemoteException;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class BankRepository{
 
-    // Map for storing the information about every currency (Account value, name, rateToUsd)
-    private Map<String, CurrencyInfo> currencies;
+    // Balances and rates to USD of every currency, addressed by dense currency ids
+    private CurrencyLedger ledger;
 
-    // Where transactions to be sent are stored
-    private final List<Transaction> outstandingCollections = new CopyOnWriteArrayList<>();
-
-    // Executed transactions and their timestamps when executed
-    private final Map<Transaction, LocalTime> transactionTimeMap = new HashMap<>();
-    private LocalTime executionTimestamp;
+    // Where transactions to be sent are stored, until they have been applied locally
+    private final Outbox outbox;
 
     // Name of the account for example group3
     private final String accountName;
 
-    // Where executed transaction go
-    private final List<Transaction> executedList = new CopyOnWriteArrayList<>();
+    // Where executed transactions go, with their order number and the time they were executed
+    private final HistoryStore history;
+
+    // OUTSTANDING / ORDERED / APPLIED status of every transaction seen, by unique ID
+    private final TxStatusIndex txStatusIndex = new TxStatusIndex();
+
+    // Entries rendered at a time when the whole history is printed
+    private static final int HISTORY_PAGE_SIZE = 1024;
 
-    // How many orders have been executed by every bank thus far
+    // How many ordered transactions have been consumed by every bank thus far
     private AtomicLong orderCounter = new AtomicLong(0);
 
-    // How many orders this bank has added to outstandingCollections
-    private final AtomicLong outstandingCounter = new AtomicLong(0);
+    // Versioned snapshots of the state, published by BankServiceImpl after every applied batch
+    private final SnapshotStore snapshots = new SnapshotStore();
+
+    // Synced reads ask the MDS for its read index on a virtual thread of their own, neither the caller nor the
+    // apply thread waits for it
+    private final ExecutorService readExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     // This holds the stub to the MDS
     private final MessageDeliveryService messageDeliveryService;
@@ -41,10 +49,37 @@ public class BankRepository{
     // This holds the name of the bank. Used for setting transaction id
     private final String bankBindingName;
 
+    // Sends outstanding transactions to the MDS, started once the bank has joined its group
+    private OutboxFlusher outboxFlusher;
+
+    // Set on exit, once the bank has left its group
+    private volatile boolean left = false;
+
+    // Lines of the results file that can wait in memory before log() blocks
+    private static final int RESULT_LOG_CAPACITY = 4096;
+
+    // Writes results/<bankBindingName>Results.txt in the background
+    private final ResultLogger resultLogger;
+
     // constructor
-    public BankRepository(String accountName, String bankBindingName, MessageDeliveryService messageDeliveryService, String pathToCurrencyFile){
+    public BankRepository(String accountName, String bankBindingName, MessageDeliveryService messageDeliveryService, String pathToCurrencyFile,
+                          ResultLogger.Durability logDurability){
         this.bankBindingName = bankBindingName;
-        this.currencies = initializeCurrency(pathToCurrencyFile);
+        try {
+            this.resultLogger = new ResultLogger(Path.of("results", bankBindingName + "Results.txt"), logDurability, RESULT_LOG_CAPACITY);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open results file for " + bankBindingName, e);
+        }
+        try {
+            // Old history segments are spilled here, history does not survive the process
+            Path spillDirectory = Files.createTempDirectory(bankBindingName + "-history");
+            spillDirectory.toFile().deleteOnExit(); // after the segment files, those are registered later
+            this.history = new HistoryStore(spillDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create history spill directory for " + bankBindingName, e);
+        }
+        this.outbox = new Outbox(bankBindingName);
+        this.ledger = initializeCurrency(pathToCurrencyFile);
         this.messageDeliveryService = messageDeliveryService;
         this.accountName = accountName;
     }
@@ -56,210 +91,198 @@ public class BankRepository{
 
         currency = (currency != null) ? currency : "USD";
 
-        double totalBalance = currencies.get(currency).getAccountValue();
-
-        for(String currString: currencies.keySet()){
-            if(!currString.equals(currency)){
-                double amountPresent = currencies.get(currString).getAccountValue();
-                double amountPresentInDollar = amountPresent * currencies.get(currString).getRate();
-                totalBalance += amountPresentInDollar / currencies.get(currency).getRate();
-            }
-        }
+        // The total is computed on read, one pass over the currencies in id order as it has always been added up
+        double totalBalance = ledger.total(ledger.requireId(currency));
 
-        LocalTime now = LocalTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        log("(" + now.format(formatter) + ") getQuickBalance " + currency + ". Total Balance: " + totalBalance);
+        log("(" + ResultLogger.timestamp() + ") getQuickBalance " + currency + ". Total Balance: " + totalBalance);
     }
 
-    // For outputting the results of bank execution
+    // For outputting the results of bank execution, the line is written by the result logger's thread
     private void log(String message) {
-        // Directory to store logs
-        String dir = "results";
-        File directory = new File(dir);
-        if (!directory.exists()) {
-            directory.mkdirs(); // create directory if it doesn't exist
-        }
-
-        // File path
-        String fileName = dir + "/" + bankBindingName + "Results.txt";
-
-        try (PrintWriter out = new PrintWriter(new FileWriter(fileName, true))) { // append mode
-            out.println(message);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        resultLogger.log(message);
     }
 
     // Deposits <amount> into <currency>
     public void deposit(String currency, double amount) {
-        currencies.get(currency).add(amount);
-        LocalTime now = LocalTime.now();
-        executionTimestamp = now;
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        log("(" + now.format(formatter) + ") deposit " + currency + " " + amount);
+        ledger.deposit(ledger.requireId(currency), amount);
+        depositApplied(currency, amount);
+    }
+
+    // Logs a deposit, for when the ledger has been changed already
+    public void depositApplied(String currency, double amount) {
+        log("(" + ResultLogger.timestamp() + ") deposit " + currency + " " + amount);
     }
 
     // adds a <percent> to <currency> or all currencies if <currency> is null
     public void addInterest(String currency, double percent) {
-        LocalTime now = LocalTime.now();
-        executionTimestamp = now;
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+        if (currency == null) {
+            ledger.addInterestToAll(percent);
+        } else {
+            ledger.addInterest(ledger.requireId(currency), percent);
+        }
+        addInterestApplied(currency, percent);
+    }
 
+    // Logs an addInterest, for when the ledger has been changed already
+    public void addInterestApplied(String currency, double percent) {
         if (currency == null) {
-            
-            for (Map.Entry<String, CurrencyInfo> entry : currencies.entrySet()) {
-                entry.getValue().addInterest(percent / 100f);
-            }
-            log("(" + now.format(formatter) + ") addInterest all currencies " + percent + "%");
+            log("(" + ResultLogger.timestamp() + ") addInterest all currencies " + percent + "%");
         } else {
-            currencies.get(currency).addInterest(percent / 100f);
-            log("(" + now.format(formatter) + ") addInterest " + currency + " " + percent + "%");
+            log("(" + ResultLogger.timestamp() + ") addInterest " + currency + " " + percent + "%");
         }
     }
 
     // Checks what <currency> is by adding every other currency to it
     // Defaults to dollar if currency is null
-    // Runs when it gets broadcasted back after being sent as a part of the view to mds
-    public void getSyncedBalanceSmart(String currency) {
+    // Read index read: once our own transactions queued before the call have been applied (so they are ordered),
+    // the MDS is asked for its committed sequence and the balance is read from the first snapshot at or past it,
+    // once the bank has applied that far. That is one round trip, nothing goes into the ordered log, and the answer
+    // reflects every transaction ordered before the call, our own outstanding ones included.
+    // The returned future completes with the balance once it has been logged, nobody has to wait for it
+    public CompletableFuture<Double> getSyncedBalance(String currency) {
 
         currency = (currency != null) ? currency : "USD";
-
-        double totalBalance = currencies.get(currency).getAccountValue();
-
-        for(String currString: currencies.keySet()){
-            if(!currString.equals(currency)){
-                double amountPresent = currencies.get(currString).getAccountValue();
-                double amountPresentInDollar = amountPresent * currencies.get(currString).getRate();
-                totalBalance += amountPresentInDollar / currencies.get(currency).getRate();
+        final String finalCurrency = currency;
+        final int id = ledger.requireId(currency);
+
+        // Completes on the apply thread that drains the outbox, the MDS is asked from a virtual thread instead
+        return outbox.whenDrained().thenApplyAsync(drained -> {
+            try {
+                return messageDeliveryService.getCommittedSequence(accountName);
+            } catch (RemoteException e) {
+                System.out.println("[BANK] [ERROR] getSyncedBalance " + finalCurrency + " failed: " + e.getMessage());
+                throw new CompletionException(e);
             }
-        }
-
-        LocalTime now = LocalTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        log("(" + now.format(formatter) + ") getSyncedBalanceSmart " + currency + ". Total Balance: " + totalBalance);
+        }, readExecutor)
+        // Completes on the apply thread once we get there, the snapshot is a copy nobody writes to
+        .thenCompose(snapshots::at)
+        .thenApply(snapshot -> {
+            double totalBalance = snapshot.getLedger().total(id);
+
+            log("(" + ResultLogger.timestamp() + ") getSyncedBalanceSmart " + finalCurrency + ". Total Balance: " + totalBalance);
+            return totalBalance;
+        });
     }
 
     // Checks what <currency> is by adding every other currency to it
     // Defaults to dollar if currency is null
-    // Runs when it gets notified and outstandingCollections is empty
+    // Runs once everything in the outbox at the time of the call has been applied. No thread waits for that,
+    // the read is registered with the outbox and runs on the apply thread that drains it
     public void getSyncedBalanceNaive(String currency) {
 
         currency = (currency != null) ? currency : "USD";
         final String finalCurrency = currency;
+        final int id = ledger.requireId(currency);
 
-        Thread t = new Thread(() -> {
-            synchronized (outstandingCollections) {
-                try 
-                {
-                    while (!outstandingCollections.isEmpty()) {
-                        outstandingCollections.wait();
-                    }
-                    
-                    double totalBalance = currencies.get(finalCurrency).getAccountValue();
-
-                    for(String currString: currencies.keySet()){
-                        if(!currString.equals(finalCurrency)){
-                            double amountPresent = currencies.get(currString).getAccountValue();
-                            double amountPresentInDollar = amountPresent * currencies.get(currString).getRate();
-                            totalBalance += amountPresentInDollar / currencies.get(finalCurrency).getRate();
-                        }
-                    }
-
-                    LocalTime now = LocalTime.now();
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-                    log("(" + now.format(formatter) + ") getSyncedBalanceNaive " + finalCurrency + ". Total Balance: " + totalBalance);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-        });
-
-        t.start();
-    }
+        outbox.whenDrained().thenRun(() -> {
+            double totalBalance = ledger.total(id);
 
-    // Notifies getSyncedBalanceNaive thread
-    public void notifyGetSyncedBalance() {
-        synchronized (outstandingCollections) {
-            outstandingCollections.notifyAll();
-        }
+            log("(" + ResultLogger.timestamp() + ") getSyncedBalanceNaive " + finalCurrency + ". Total Balance: " + totalBalance);
+        });
     }
 
-
     // Asks MDS for information about current members with same account
     public void memberInfo(String groupName) throws RemoteException{
         System.out.println("[BANK] Getting members for group " + groupName + ":");
-        LocalTime now = LocalTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        log("(" + now.format(formatter) + ") memberInfo " + groupName + ":");
+        log("(" + ResultLogger.timestamp() + ") memberInfo " + groupName + ":");
         for(String member : messageDeliveryService.getMemberNames(groupName)){
             log("\t"+member);
             System.out.println(member);
         }
     }
 
-    // Shows the current state of executedList
-    // Shows the current state of outstandingCollections
+    // Shows the executed transactions, read from the history store a page at a time. Every page is written out as
+    // soon as it is read, the whole history is never held in memory
+    // Shows the current state of the outbox
     public void getHistory() {
-        StringBuilder sb = new StringBuilder();
-        long start = orderCounter.get() - executedList.size(); // Added logic for the numbering of each transaction
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        sb.append("[BANK] Transaction history:\n");
- 
-        sb.append("\tExecuted transactions:\n");
-        for (int i = 0; i < executedList.size(); i++) {
-            Transaction t = executedList.get(i);
-            long n = start + i + 1; 
-            sb.append("\t\t").append(n).append(". ")
-              .append(transactionTimeMap.get(t).format(formatter)).append(" ")
-              .append(t.getCommand()).append(" ")
-              .append(t.getUniqueId()).append("\n");
+        long start = orderCounter.get(); // Outstanding transactions are numbered after the last ordered one
+        log("(" + ResultLogger.timestamp() + ") getHistory:\n [BANK] Transaction history:\n\tExecuted transactions:");
+        System.out.println("[BANK] Transaction history:\n\tExecuted transactions:");
+        try {
+            long position = 0;
+            List<HistoryStore.Entry> page;
+            while (!(page = history.read(position, HISTORY_PAGE_SIZE)).isEmpty()) {
+                String lines = historyLines(page);
+                log(lines);
+                System.out.println(lines);
+                position += page.size();
+            }
+        } catch (IOException e) {
+            System.out.println("[BANK] [ERROR] Reading history failed: " + e.getMessage());
         }
 
-        sb.append("\n\tOutstanding transactions:\n");
-        for (int i = 0; i < outstandingCollections.size(); i++) {
-            Transaction t = outstandingCollections.get(i);
+        StringBuilder sb = new StringBuilder("\n\tOutstanding transactions:");
+        List<Transaction> outstandingTransactions = outbox.getTransactions();
+        for (int i = 0; i < outstandingTransactions.size(); i++) {
+            Transaction t = outstandingTransactions.get(i);
             long n = start + i + 1;
-            sb.append("\t\t").append(n).append(". ").append(t.getCommand()).append(" ")
-                    .append(t.getUniqueId()).append("\n");
+            sb.append("\n\t\t").append(n).append(". ").append(t.getCommand()).append(" ").append(t.getUniqueId());
         }
-        LocalTime now = LocalTime.now();
-        log("(" + now.format(formatter) + ") getHistory:\n " + sb);
+        log(sb.toString());
         System.out.println(sb);
     }
 
-    // Checks if a transaction with <uniqeId> id is executed or not
-    public void checkTxStatus(String uniqueId) {
-        for (Transaction t : outstandingCollections) {
-            System.out.print(t.getUniqueId());
-            String[] extractedTValue = t.getUniqueId().split(":");
-            if (extractedTValue[1].equals(uniqueId)) {
-                LocalTime now = LocalTime.now();
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-                log("(" + now.format(formatter) + ") checkTxStatus  " + uniqueId + ": OUTSTANDING");
-                System.out.println("[BANK] TRANSACTION  ´" + uniqueId + "´ IS OUTSTANDING");
-                return;
+    // Shows <count> executed transactions starting at position <from> of the history (0 is the oldest kept)
+    public void getHistory(long from, int count) {
+        String header;
+        String lines;
+        try {
+            List<HistoryStore.Entry> page = history.read(from, count);
+            header = "[BANK] Transaction history " + from + " to " + (from + page.size()) + " of " + history.size()
+                    + ":\n\tExecuted transactions:";
+            lines = historyLines(page);
+        } catch (IOException e) {
+            System.out.println("[BANK] [ERROR] Reading history failed: " + e.getMessage());
+            return;
+        }
+        log("(" + ResultLogger.timestamp() + ") getHistory " + from + " " + count + ":\n " + header + "\n" + lines);
+        System.out.println(header + "\n" + lines);
+    }
+
+    // One line per entry, without a newline after the last one
+    private static String historyLines(List<HistoryStore.Entry> entries) {
+        StringBuilder sb = new StringBuilder();
+        for (HistoryStore.Entry entry : entries) {
+            Transaction t = entry.transaction();
+            if (sb.length() > 0) {
+                sb.append("\n");
             }
+            sb.append("\t\t").append(entry.orderNumber() + 1).append(". ")
+              .append(ResultLogger.timestamp(entry.timestampMillis())).append(" ")
+              .append(t.getCommand()).append(" ")
+              .append(t.getUniqueId());
         }
+        return sb.toString();
+    }
 
-        LocalTime now = LocalTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        log("(" + now.format(formatter) + ") checkTxStatus  " + uniqueId + ": APPLIED");
-        System.out.println("[BANK] TRANSACTION ´" + uniqueId + "´ IS APPLIED");
+    // Looks up the status of a transaction, <uniqueId> is "bankName:sequence" or just this banks local sequence
+    public void checkTxStatus(String uniqueId) {
+        String id = uniqueId.indexOf(':') < 0 ? bankBindingName + ":" + uniqueId : uniqueId;
+        TxStatus status = txStatusIndex.lookup(List.of(id)).get(0);
+
+        String detail = switch (status.state()) {
+            case ORDERED -> " #" + (status.sequence() + 1);
+            case APPLIED -> status.sequence() < 0 ? "" : " #" + (status.sequence() + 1) + " at "
+                    + ResultLogger.timestamp(status.appliedAtMillis());
+            default -> "";
+        };
+        log("(" + ResultLogger.timestamp() + ") checkTxStatus  " + uniqueId + ": " + status.state() + detail);
+        System.out.println("[BANK] TRANSACTION ´" + uniqueId + "´ IS " + status.state() + detail);
     }
 
-     // clears executed_list (but doesnt reset orderCounter)
+     // clears the history store (but doesnt reset orderCounter)
     public void cleanHistory() {
-        executedList.clear();
-        LocalTime now = LocalTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        log("(" + now.format(formatter) + ") cleanHistory");
+        try {
+            history.clear();
+        } catch (IOException e) {
+            System.out.println("[BANK] [ERROR] Removing history segments failed: " + e.getMessage());
+        }
+        log("(" + ResultLogger.timestamp() + ") cleanHistory");
     }
 
     // Sleeps the thread that calls it
     public void sleep(double seconds) throws InterruptedException {
-        LocalTime now = LocalTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        log("(" + now.format(formatter) + ") sleep " + seconds + "s");
+        log("(" + ResultLogger.timestamp() + ") sleep " + seconds + "s");
         long ms = Math.round(seconds * 1000.0);
         try { Thread.sleep(ms); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
     }
@@ -269,41 +292,84 @@ public class BankRepository{
     // This is cause Interactive mode is run on a thread in 1 jvm.
     public void exit(boolean isInteractive) throws RemoteException {
         System.out.println("[BANK] Exiting...");
+        System.out.println(outboxFlusher.report());
 
-        LocalTime now = LocalTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-        for (Map.Entry<String, CurrencyInfo> entry : currencies.entrySet()) {
-            log("currency: " + entry.getKey() + " -> " + entry.getValue().getAccountValue());
+        for (int id = 0; id < ledger.size(); id++) {
+            log("currency: " + ledger.name(id) + " -> " + ledger.balance(id));
         }
-        log("(" + now.format(formatter) + ") exit");
+        log("(" + ResultLogger.timestamp() + ") exit");
+        // Everything has to be in the results file before the process goes away
+        resultLogger.flush();
+        left = true;
         messageDeliveryService.leaveGroup(accountName, bankBindingName);
         if(!isInteractive){
             System.exit(0);
         }
     }
 
-    // Adds to outstandingCollections
-    public void addOutstandingTransaction(Transaction transaction){
-        outstandingCollections.add(transaction);
-        outstandingCounter.incrementAndGet();
+    // Whether the bank has left its group for good, it must not rejoin then
+    public boolean hasLeft() {
+        return left;
+    }
+
+    // Adds the command to the outbox as a new transaction, the flusher sends it to the MDS
+    public Transaction addOutstandingTransaction(Operation.Ordered operation){
+        Transaction transaction = outbox.append(operation);
+        txStatusIndex.outstanding(transaction);
+        return transaction;
+    }
+
+    // Starts sending outstanding transactions to the MDS
+    public void startOutboxFlusher(int batchSize, long lingerMillis){
+        outboxFlusher = new OutboxFlusher(messageDeliveryService, accountName, outbox, batchSize, lingerMillis);
+        outboxFlusher.start(bankBindingName);
     }
 
-    // Adds to executedList and transactionTimeMap
-    public void addToExecutedList(Transaction tAdd){
-        executedList.add(tAdd);
-        transactionTimeMap.put(tAdd, executionTimestamp);
+    // Adds an executed transaction to the history with its order number and the time now
+    public void addToExecutedList(Transaction tAdd, long orderNumber){
+        try {
+            history.append(tAdd, orderNumber, System.currentTimeMillis());
+        } catch (IOException e) {
+            System.out.println("[BANK] [ERROR] Spilling history failed: " + e.getMessage());
+        }
     }
 
     // Setting the state for replicas that need to get synchronized with existing banks
+    // The snapshot is copied, snapshots are immutable and must not become the live state
     public void setState(Pair snapshot){
         this.orderCounter = new AtomicLong(snapshot.getOrderCounter());
-        this.currencies = snapshot.getCurrencies();
+        this.ledger = new CurrencyLedger(snapshot.getLedger());
+    }
+
+    // After a snapshot replaced our state: our transactions up to acknowledged are in it and will never be delivered
+    // to us, so they leave the outbox, and the history and transaction statuses from before it no longer line up
+    // with the state, so they start over. Whatever is still in the outbox is outstanding again
+    public void restartFromSnapshot(long acknowledged){
+        outbox.applied(acknowledged);
+        try {
+            history.clear();
+        } catch (IOException e) {
+            System.out.println("[BANK] [ERROR] Removing history segments failed: " + e.getMessage());
+        }
+        txStatusIndex.clear();
+        for(Transaction transaction : outbox.getTransactions()){
+            txStatusIndex.outstanding(transaction);
+        }
+    }
+
+    // Setting the state from a checkpoint file, it is mapped and the ledger is built straight from it.
+    // The loaded ledger belongs to nobody else, so it becomes the live state without a copy
+    public void setState(Path checkpointFile) throws IOException {
+        Pair checkpoint = LedgerCheckpoint.load(checkpointFile);
+        this.orderCounter = new AtomicLong(checkpoint.getOrderCounter());
+        this.ledger = checkpoint.getLedger();
     }
 
 
     // Reads a rate file to initialize the currencies all with 0 value at the start
+    // Currency codes get their ids here, in the same order the currencies have always been listed in
     @SuppressWarnings("CallToPrintStackTrace")
-    private Map<String, CurrencyInfo> initializeCurrency(String pathToRateFile){
+    private CurrencyLedger initializeCurrency(String pathToRateFile){
         List<String> lines;
         try {
             lines = Utils.readAllLines(new File(pathToRateFile));
@@ -312,17 +378,16 @@ public class BankRepository{
             return null;
         }
 
-        Map<String,CurrencyInfo> retValue = new HashMap<>();
+        Map<String, Double> rates = new HashMap<>();
 
         for(String line: lines){
             String[] parts = line.split("\\s+");
-            CurrencyInfo newCurrency = new CurrencyInfo(parts[0], Double.parseDouble(parts[1]));
-            retValue.put(parts[0], newCurrency);
+            rates.put(parts[0], Double.parseDouble(parts[1]));
         }
 
-        retValue.put("USD", new CurrencyInfo("USD", 1f));
+        rates.put("USD", 1.0);
 
-        return retValue;
+        return new CurrencyLedger(rates);
     }
 
     // Getters
@@ -330,24 +395,28 @@ public class BankRepository{
          return bankBindingName;
     }
 
-    public AtomicLong getOutstandingCount() {
-         return outstandingCounter;
+    public SnapshotStore getSnapshots() {
+        return snapshots;
+    }
+
+    public Outbox getOutbox() {
+         return outbox;
     }
 
-    public List<Transaction> getOutstandingTransactions() {
-         return this.outstandingCollections;
+    public TxStatusIndex getTxStatusIndex() {
+        return txStatusIndex;
     }
 
-    public List<Transaction> getExecutedTransactions() {
-        return executedList;
+    public HistoryStore getHistoryStore() {
+        return history;
     }
 
     public AtomicLong getOrderCounter(){
         return orderCounter;
     }
 
-    public Map<String, CurrencyInfo> getCurrencies(){
-        return currencies;
+    public CurrencyLedger getLedger(){
+        return ledger;
     }
 
     public String getAccountName() {
@@ -1,26 +1,20 @@
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.util.List;
 import java.util.Scanner;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.TimeUnit;
 
 public class BankServer {
 
-    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-
-    // For rmiregistry
-    private static final String REGISTRY_IP = "localhost";
-    private static final int REGISTRY_PORT = 1099;
+    // Shared by every bank in this JVM (interactive mode runs several), see Transport for how it is chosen
+    private static Transport transport;
 
     private final String bankBindingName; // e.g. "bank-R1"
     private final String mdsBindingName; // e.g. "message-delivery-service"
@@ -33,7 +27,7 @@ public class BankServer {
     private final BankRepository repository;
 
     // Constructor reads information from BankConfig
-    public BankServer(BankConfig config) throws RemoteException, NotBoundException {
+    public BankServer(BankConfig config) throws IOException, NotBoundException {
         bankBindingName = config.bankBindingName(); // e.g. "bank-R1"
         mdsBindingName = config.mdsBindingName(); // e.g. "message-delivery-service"
         accountName = config.accountName(); // e.g. "group3"
@@ -41,50 +35,65 @@ public class BankServer {
         currencyFileName = config.currencyFileName(); // e.g. "path/to/currencies.txt"
         transactionFileName = config.transactionFileName(); // e.g. "path/to/transactions.txt"
 
-        // Find rmiregistry
-        Registry registry = LocateRegistry.getRegistry(REGISTRY_IP, REGISTRY_PORT);
-        System.out.println("[BANK] Located registry");
-
         // Find mds stub
-        MessageDeliveryService mds = (MessageDeliveryService) registry.lookup(mdsBindingName);
+        MessageDeliveryService mds = transport().lookup(mdsBindingName, MessageDeliveryService.class);
         System.out.println("[BANK] Found MDS: " + mdsBindingName);
 
         // Create bank repository
-        repository = new BankRepository(accountName, bankBindingName, mds, currencyFileName);
+        repository = new BankRepository(accountName, bankBindingName, mds, currencyFileName, config.logDurability());
         System.out.println("[BANK] Created Bank Repository");
 
-        // Create BankService skeleton for rmi
-        BankServiceImpl bankImpl = new BankServiceImpl(repository);
-        registry.rebind(bankBindingName, bankImpl);
+        // With a data directory the bank comes back from its own checkpoint and WAL after a crash
+        ReplicaStore store = null;
+        if(config.dataDirectory() != null){
+            store = new ReplicaStore(Path.of(config.dataDirectory(), bankBindingName), config.checkpointInterval());
+            if(store.recover(repository)){
+                System.out.println("[BANK] Recovered state at order counter " + repository.getOrderCounter().get());
+            }
+        }
+
+        // Create BankService skeleton and make it reachable for the MDS
+        BankServiceImpl bankImpl = new BankServiceImpl(repository, store, new ApplyScheduler(config.parallelApplyThreshold()));
+        transport().export(bankBindingName, BankService.class, bankImpl);
         System.out.println("[BANK] Bound BankService as: " + bankBindingName);
 
         // Joins the group determined by accountname
-        // Checks if existing replicas have run to share their state
-        Pair snapshot = mds.joinGroup(accountName, bankBindingName, numberOfReplicas);
-        if(snapshot != null){
-            repository.setState(snapshot);
-        }
+        // A bank that starts fresh pulls a snapshot of the group's state in chunks. A recovered bank only does if
+        // the MDS no longer holds the log past its order counter, otherwise it is caught up from the log
+        GroupMembership membership = new GroupMembership(mds, accountName, bankBindingName, repository, bankImpl, store);
+        long acknowledged = membership.join();
+
+        // Continue numbering our transactions after the last one the MDS has ordered for this bank
+        repository.getOutbox().startAt(acknowledged + 1);
         System.out.printf("[BANK] Joined group %s\n", accountName);
 
-        System.out.println("[BANK] Waiting for all banks to join group " + accountName + "...");
-        mds.awaitExecution();
+        System.out.println("[BANK] Waiting for " + numberOfReplicas + " banks to join group " + accountName + "...");
+        while(!mds.awaitExecution(accountName, numberOfReplicas)){
+            System.out.println("[BANK] Still waiting for group " + accountName + " to fill up...");
+        }
         System.out.println("[BANK] Bank server started");
 
+        // From here on an eviction is noticed and the bank joins again
+        membership.startWatchdog();
+
         parser = new CommandParser(repository);
         System.out.println("[BANK] Command parser created");
 
-        // Create a scheduler for sending transactions every 10 seconds
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                //System.out.println("[BANK] Sending outstanding collection to MDS..."); // COMMENTED OUT, GOOD FOR DEUBG
-                mds.sendTransactions(accountName, repository.getOutstandingTransactions());
-            } catch (RemoteException e) {
-                e.printStackTrace();
-            }
-        }, 10, 10, TimeUnit.SECONDS);
+        // Start sending outstanding transactions to the MDS, in batches of flushBatchSize or after
+        // flushLingerMillis, whichever comes first
+        repository.startOutboxFlusher(config.flushBatchSize(), config.flushLingerMillis());
+    }
+
+    // Banks are created in parallel, the first one opens the transport
+    private static synchronized Transport transport() throws IOException {
+        if (transport == null) {
+            transport = Transport.fromSystemProperties(false);
+            System.out.println("[BANK] Using " + Transport.DEFAULT_KIND + " transport");
+        }
+        return transport;
     }
 
-    public static void main(String[] args) throws RemoteException, NotBoundException {
+    public static void main(String[] args) throws IOException, NotBoundException {
 
         // Runs interactive mode or batch mode depending on the user configuration
         BankConfig bankConfig = BankConfig.fromArgs(args);
@@ -121,7 +130,13 @@ public class BankServer {
                             bankConfig.accountName(),
                             bankConfig.numberOfReplicas(),
                             bankConfig.currencyFileName(),
-                            bankConfig.transactionFileName()
+                            bankConfig.transactionFileName(),
+                            bankConfig.flushBatchSize(),
+                            bankConfig.flushLingerMillis(),
+                            bankConfig.logDurability(),
+                            bankConfig.dataDirectory(),
+                            bankConfig.checkpointInterval(),
+                            bankConfig.parallelApplyThreshold()
                     );
                     BankServer bankServer = new BankServer(config);
                     banks.add(bankServer);
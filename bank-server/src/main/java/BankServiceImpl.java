@@ -1,13 +1,19 @@
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class BankServiceImpl extends UnicastRemoteObject implements BankService {
+// Exported as a remote object, never serialized by value
+@SuppressWarnings("serial")
+public class BankServiceImpl extends UnicastRemoteObject implements BankService, TxStatusService {
 
     // Implementation of the BankService interface
     // This class receives ordered transaction batches from the MDS, and applies them to the local BankRepository
@@ -15,80 +21,277 @@ public class BankServiceImpl extends UnicastRemoteObject implements BankService
 
     private final BankRepository repository; // Local data store for this bank
     private final ReentrantLock lock = new ReentrantLock(true); // Ensures ordered and exclusive updates
-    private Pair deliverPair = null;  // Latest snapshot of balance state
+
+    // How long getBalanceAt waits for the bank to reach the requested order counter
+    private static final long SNAPSHOT_WAIT_SECONDS = 10;
+    private final SnapshotStore snapshots; // Versioned snapshots of balance state, owned by the repository
+
+    // Next global sequence this bank expects from the MDS, -1 until the bank has installed its state
+    private final ReentrantLock deliveryLock = new ReentrantLock();
+    private long deliveredSequence = -1;
+
+    // Batches that overtook an earlier one, by first sequence. Guarded by deliveryLock
+    private static final int REORDER_BUFFER_BATCHES = 64;
+    private final TreeMap<Long, List<Transaction>> reorderBuffer = new TreeMap<>();
+
+    // When the MDS last got in touch (heartbeat or delivery), a long silence means we may have been evicted
+    private volatile long lastContact = System.currentTimeMillis();
 
     private final ExecutorService executor = Executors.newSingleThreadExecutor(); // Handles async execution
 
-    public BankServiceImpl(BankRepository repository) throws RemoteException {
+    private final CommandParser parser; // Executes the operations of applied transactions
+
+    private final ReplicaStore store; // WAL and checkpoints, null if the bank keeps its state in memory only
+
+    private final ApplyScheduler scheduler; // Applies the ledger changes of a batch, per currency in parallel
+
+    // Order counter and ledger digest after the last applied batch, sent back with every ACK
+    private record AppliedState(long counter, long digest) {}
+    private volatile AppliedState appliedState = new AppliedState(-1, 0);
+
+    // Order counter up to which our state is in the WAL (or applied, without a store). The MDS keeps its log past it
+    private volatile long durableSequence = -1;
+
+    // Set when writing the WAL or a checkpoint failed. The WAL has a gap from there, nothing is logged and the
+    // durable mark stands still until GroupMembership has rejoined and the store starts over from a checkpoint
+    private volatile boolean storeFailed = false;
+
+    public BankServiceImpl(BankRepository repository, ReplicaStore store, ApplyScheduler scheduler) throws RemoteException {
         this.repository = repository;
+        this.snapshots = repository.getSnapshots();
+        this.parser = new CommandParser(repository);
+        this.store = store;
+        this.scheduler = scheduler;
     }
 
     // Called by MDS when it delivers an ordered batch of transactions
-    // Each transaction is applied sequentially to the local repository
+    // The MDS keeps several batches in flight, so they may arrive in any order. A batch that starts past our
+    // delivered high-water mark waits in the reorder buffer until the ones before it are here, any overlap with
+    // what we already have is skipped. Every reply carries the high-water mark, if the buffer is full the batch
+    // is dropped and the MDS resends from there
+    // Batches are applied to the local repository in sequence order, with the ledger changes of long single
+    // currency runs made in parallel by the ApplyScheduler
     // The method is executed asynchronously but protected by a lock to guarantee consistency within this replica
 
     @Override
-    public boolean deliverOrderedBatch(List<Transaction> orderedTransactions) throws RemoteException {
-        executor.submit(()->{
-            lock.lock();
-            try {
-                deliverPair = null; // Reset state before applying new batch
-                int idx = repository.getOrderCounter().intValue();
-                CommandParser parser = new CommandParser(repository);
-                // Apply all transactions in the given order
-                for(int i = idx; i < orderedTransactions.size(); i++){
-                    String command = parser.parseTransactionFromLine(orderedTransactions.get(i).command())[0];
-                    String bankName = orderedTransactions.get(i).uniqueId().split(":")[0];
-                    Transaction t = orderedTransactions.get(i);
-                    // Execute getSyncedBalance only on the requesting bank
-                    if(command.toLowerCase().equals("getsyncedbalance")){
-                        if(bankName.equals(repository.getBankBindingName())){
-                            parser.executeTransaction(t.command());
-                        }
-                    }
-                    else{
-                        // Apply normal transaction to this bank
-                        parser.executeTransaction(t.command());
-
-                        repository.addToExecutedList(t);
-                        repository.getOrderCounter().incrementAndGet();
-                    }
-                    // Remove transaction from outstanding list once done
-                    repository.getOutstandingTransactions().remove(t);
-                    //repository.notifyGetSyncedBalance();
-                } 
-                // After all transactions are processed, create a new state snapshot
-                deliverPair = new Pair(repository.getCurrencies(), repository.getOrderCounter().intValue());     
-            } finally {
-                lock.unlock();
+    public DeliveryAck deliverOrderedBatch(long firstSequence, List<Transaction> orderedTransactions) throws RemoteException {
+        lastContact = System.currentTimeMillis();
+        deliveryLock.lock();
+        try {
+            // State is not installed yet, the MDS will retry
+            if(deliveredSequence < 0){
+                return DeliveryAck.notReady();
+            }
+
+            // Ahead of us, an earlier batch is still on its way
+            if(firstSequence > deliveredSequence){
+                if(reorderBuffer.size() < REORDER_BUFFER_BATCHES){
+                    reorderBuffer.putIfAbsent(firstSequence, List.copyOf(orderedTransactions));
+                } else {
+                    System.out.println("[BANK] Reorder buffer full, dropping batch at " + firstSequence);
+                }
+                return ack();
+            }
+
+            accept(firstSequence, orderedTransactions);
+            // Buffered batches that were waiting for this one can follow now
+            Map.Entry<Long, List<Transaction>> waiting;
+            while((waiting = reorderBuffer.firstEntry()) != null && waiting.getKey() <= deliveredSequence){
+                reorderBuffer.pollFirstEntry();
+                accept(waiting.getKey(), waiting.getValue());
+            }
+
+            return ack(); // ACK with our new high-water mark
+        } finally {
+            deliveryLock.unlock();
+        }
+    }
+
+    // Takes the part of a batch past our high-water mark and queues it for applying. Called with deliveryLock held,
+    // batches reach the executor in sequence order
+    private void accept(long firstSequence, List<Transaction> orderedTransactions){
+        // Skip the prefix we have already received
+        int skip = (int) (deliveredSequence - firstSequence);
+        if(skip >= orderedTransactions.size()){
+            return;
+        }
+
+        List<Transaction> delta = List.copyOf(orderedTransactions.subList(skip, orderedTransactions.size()));
+        long startSequence = deliveredSequence;
+        deliveredSequence += delta.size();
+        for(int i = 0; i < delta.size(); i++){
+            repository.getTxStatusIndex().ordered(delta.get(i), startSequence + i);
+        }
+
+        executor.submit(() -> apply(startSequence, delta));
+    }
+
+    private void apply(long startSequence, List<Transaction> delta){
+        lock.lock();
+        try {
+            // Apply all transactions in the given order. Runs between barriers get their ledger changes
+            // from the scheduler, in parallel for long runs, barriers are executed on their own
+            int i = 0;
+            while(i < delta.size()){
+                if(ApplyScheduler.isBarrier(delta.get(i))){
+                    complete(delta.get(i), startSequence + i, false);
+                    i++;
+                    continue;
+                }
+                int end = ApplyScheduler.runEnd(delta, i);
+                boolean[] applied = scheduler.applyRun(repository.getLedger(), delta, i, end);
+                for(int k = i; k < end; k++){
+                    complete(delta.get(k), startSequence + k, applied[k - i]);
+                }
+                i = end;
+            }
+            // Log the batch before anyone can read the new state, checkpoint every so often.
+            // Only a logged batch counts towards the durable mark
+            if(store == null){
+                durableSequence = startSequence + delta.size();
             }
-        });
+            else if(!storeFailed){
+                try {
+                    store.append(startSequence, delta);
+                    durableSequence = startSequence + delta.size();
+                    store.checkpointIfDue(repository.getLedger(), repository.getOrderCounter().get());
+                } catch (IOException e) {
+                    storeFailed = true;
+                    System.out.println("[BANK] [ERROR] Writing the WAL failed, rejoining: " + e.getMessage());
+                }
+            }
+            // After all transactions are processed, publish a new state snapshot
+            snapshots.publish(repository.getLedger(), repository.getOrderCounter().get());
+            appliedState = new AppliedState(repository.getOrderCounter().get(), repository.getLedger().digest());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Our delivered high-water mark and the digest of the last state we finished applying
+    private DeliveryAck ack(){
+        AppliedState applied = appliedState;
+        return new DeliveryAck(deliveredSequence, applied.counter(), applied.digest(), durableSequence);
+    }
+
+    // Finishes one ordered transaction in order: executes it (or only reports it if the scheduler has already
+    // changed the ledger for it), records it and moves the order counter past it
+    private void complete(Transaction t, long sequence, boolean ledgerApplied){
+        Operation operation = Operation.of(t);
+        boolean own = t.origin().equals(repository.getBankBindingName());
+        // Apply transaction to this bank
+        if(ledgerApplied && operation instanceof Operation.CurrencyUpdate update){
+            update.reportApplied(repository);
+        }
+        else{
+            parser.execute(operation);
+        }
+        repository.addToExecutedList(t, sequence);
+        // Every ordered transaction occupies a sequence number and goes into the digest
+        repository.getLedger().recordApplied(t);
+        repository.getOrderCounter().incrementAndGet();
+        repository.getTxStatusIndex().applied(t, sequence, System.currentTimeMillis());
+        // Our own transactions leave the outbox once done
+        if(own){
+            repository.getOutbox().applied(t.sequence());
+        }
+    }
 
-        return true; // ACK
+    // Called once the bank has installed its state (possibly from a join snapshot) and the store has checkpointed it,
+    // from here on ordered batches are accepted starting at the given sequence
+    public void startDelivery(long sequence) {
+        lastContact = System.currentTimeMillis();
+        deliveryLock.lock();
+        try {
+            snapshots.publish(repository.getLedger(), sequence);
+            appliedState = new AppliedState(sequence, repository.getLedger().digest());
+            durableSequence = sequence;
+            storeFailed = false;
+            deliveredSequence = sequence;
+        } finally {
+            deliveryLock.unlock();
+        }
     }
 
-    // Called by MDS to retrieve the latest state snapshot from this bank
-    // The method waits until the previous batch has been fully applied, 
-    // and then returns the resulting balance and order counter.
+    // Stops accepting ordered batches (the MDS is told we are not ready) and waits until the ones already accepted
+    // have been applied, so the state stands still at the order counter. Called before the bank rejoins its group,
+    // startDelivery resumes
+    public void suspendDelivery() throws InterruptedException {
+        deliveryLock.lock();
+        try {
+            deliveredSequence = -1;
+            reorderBuffer.clear();
+        } finally {
+            deliveryLock.unlock();
+        }
+        try {
+            executor.submit(() -> {}).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Whether the WAL could not be written, the bank has to rejoin from a fresh checkpoint
+    public boolean hasStoreFailed() {
+        return storeFailed;
+    }
 
+    // Milliseconds since the MDS last sent a heartbeat or a batch
+    public long millisSinceContact() {
+        return System.currentTimeMillis() - lastContact;
+    }
+
+    // Called by the MDS failure detector, answering is all that is needed
+    @Override
+    public void heartbeat() throws RemoteException {
+        lastContact = System.currentTimeMillis();
+    }
+
+    // Our current state, cut into chunks for the MDS when this bank is the first of its group
+    @Override
+    public StateChunk getStateChunk(int firstId) throws RemoteException {
+        return StateChunk.of(repository.getLedger(), repository.getOrderCounter().get(), firstId);
+    }
+
+    // Returns the latest published snapshot, the balance and order counter after the last applied batch
     @Override
-    @SuppressWarnings("CallToPrintStackTrace")
     public Pair getBalance() throws RemoteException {
-        CompletableFuture<Pair> future = new CompletableFuture<>();
-        executor.submit(()->{
-            while(deliverPair == null){ 
-            }
-            future.complete(deliverPair);
-        });
+        return snapshots.latest();
+    }
+
+    // Returns the snapshot taken at exactly the given order counter, waiting for the bank to apply up to it if
+    // needed, or null if the bank does not hold that version. Only the calling RMI thread waits, the apply executor
+    // is never involved
+    @Override
+    @SuppressWarnings("CallToPrintStackTrace")
+    public Pair getBalanceAt(long orderCounter) throws RemoteException {
         try {
-            return future.get();   // Return the latest snapshot
+            Pair snapshot = snapshots.exactly(orderCounter).get(SNAPSHOT_WAIT_SECONDS, TimeUnit.SECONDS);
+            if(snapshot == null){
+                System.out.println("[BANK] No snapshot retained at order counter " + orderCounter);
+            }
+            return snapshot;
+        } catch (TimeoutException e) {
+            System.out.println("[BANK] No snapshot at order counter " + orderCounter + " yet");
+            return null;
         } catch (ExecutionException | InterruptedException e) {
             e.printStackTrace();
             return null;
         }
     }
 
-    // Returns this bank’s repository 
+    // Local access to the versioned snapshots, callers get a future instead of blocking
+    public SnapshotStore getSnapshots() {
+        return snapshots;
+    }
+
+    // Batch status query for clients polling many transactions, one lock round trip for the whole list
+    @Override
+    public List<TxStatus> checkTxStatus(List<String> uniqueIds) throws RemoteException {
+        return repository.getTxStatusIndex().lookup(uniqueIds);
+    }
+
+    // Returns this bank’s repository
     public BankRepository getRepository() {
         return this.repository;
     }
@@ -27,160 +27,97 @@ public class CommandParser {
     }
 
     /*
-     * Determines if a command should be executed immidiately or queued 
-     * as an outstanding transactions.
+     * Compiles the command and decides if it should be executed immidiately or queued
+     * as an outstanding transaction.
      */
     public void buildOutstandingTransactions(String command){
 
-        //Validates command
-        boolean isValid = verifyTransaction(command);
-
-        if(isValid) {
-            String[] tokens = parseTransactionFromLine(command);
-            String cmd = tokens[0];
-
-            // Certain commands (like deposit) are queued for later execution
-            switch(cmd.toLowerCase()){
-                case "addinterest", "deposit", "getsyncedbalance":
-
-                    //Create unique transaction ID and queues for later execution
-                    String uniqueId = repository.getBankBindingName() + ":" + repository.getOutstandingCount();
-                    Transaction tx = new Transaction(command, uniqueId);
-                    repository.addOutstandingTransaction(tx);
-                    break;
+        // Validates and parses the command, this is the only time the string is looked at
+        Operation operation = compile(command);
+        if(operation == null){
+            return;
+        }
 
-                // Other commands execute immidiately    
-                default:
-                    executeTransaction(command);
-            }
+        // Ordered operations (deposit, addInterest) are queued for later execution,
+        // the outbox gives them a unique transaction ID
+        if(operation instanceof Operation.Ordered ordered){
+            repository.addOutstandingTransaction(ordered);
+        }
+        // Other commands execute immidiately
+        else{
+            execute(operation);
         }
     }
 
-    // Validates wheter a given command string has the correct strucure and arguments
-    public boolean verifyTransaction(String input){
+    // Validates a command string and turns it into an Operation, returns null if it is invalid
+    public Operation compile(String input){
         String[] tokens = parseTransactionFromLine(input);
+        if(tokens == null){
+            return null;
+        }
         String cmd = tokens[0];
 
         try {
             switch (cmd.toLowerCase()) {
-                case "memberinfo", "gethistory", "cleanhistory", "exit", "exitinteractive", "getsyncedbalance", "getquickbalance":
-                    return true;
+                case "memberinfo":
+                    return new Operation.MemberInfo();
+                case "gethistory":
+                    if (tokens.length >= 3) {
+                        return new Operation.GetHistoryPage(Long.parseLong(tokens[1]), Integer.parseInt(tokens[2]));
+                    }
+                    return new Operation.GetHistory();
+                case "cleanhistory":
+                    return new Operation.CleanHistory();
+                case "exit":
+                    return new Operation.Exit(false);
+                case "exitinteractive":
+                    return new Operation.Exit(true);
+                case "getsyncedbalance":
+                    return new Operation.SyncedBalance(tokens.length == 1 ? null : tokens[1]);
+                case "getquickbalance":
+                    return new Operation.QuickBalance(tokens.length == 1 ? null : tokens[1]);
                 case "deposit":
                     if (tokens.length < 3) {
                         System.out.println("[BANK] [ERROR] Usage: deposit <currency> <amount>");
                         break;
                     }
-                    return true;
+                    return new Operation.Deposit(tokens[1], Double.parseDouble(tokens[2]), input);
                 case "addinterest":
                     if (tokens.length < 2) {
                         System.out.println("[BANK] [ERROR] Usage: addInterest [currency] <percent>");
                         break;
                     }
-                    return true;
+                    if (tokens.length == 2) {
+                        return new Operation.AddInterest(null, Double.parseDouble(tokens[1]), input);
+                    }
+                    return new Operation.AddInterest(tokens[1], Double.parseDouble(tokens[2]), input);
                 case "checktxstatus":
                     if (tokens.length < 2) {
                         System.out.println("[BANK] [ERROR] Usage: checkTxStatus <id>");
                         break;
                     }
-                    return true;
+                    return new Operation.CheckTxStatus(tokens[1]);
                 case "sleep":
                     if (tokens.length < 2) {
                         System.out.println("[BANK] [ERROR] Usage: sleep <seconds>");
                         break;
                     }
-                    return true;
+                    return new Operation.Sleep(Double.parseDouble(tokens[1]));
                 default:
                     System.out.println("[BANK] [ERROR] Unknown command: " + cmd);
                     break;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (NumberFormatException e) {
             System.out.println("[BANK] [ERROR] Exception: " + e.getMessage());
         }
 
-        return false;
+        return null;
     }
 
-    // Executes a valid banking command by delegating to BankRepository
-    public void executeTransaction(String input) {
-        String[] tokens = parseTransactionFromLine(input);
-        String cmd = tokens[0];
-
+    // Executes a compiled operation against the BankRepository
+    public void execute(Operation operation) {
         try {
-            switch (cmd.toLowerCase()) {
-                case "memberinfo":
-                    repository.memberInfo(repository.getAccountName());
-                    break;
-
-                case "getquickbalance":
-                    if(tokens.length == 1){
-                        repository.getQuickBalance(null);
-                        break;
-                    }
-
-                    repository.getQuickBalance(tokens[1]);
-                    break;
-
-                case "getsyncedbalance":
-                    if(tokens.length == 1){
-                        repository.getSyncedBalanceSmart(null);
-                        break;
-                    }
-
-                    repository.getSyncedBalanceSmart(tokens[1]);
-                    //repository.getSyncedBalanceNaive(tokens[1]);
-                    break;
-
-                case "deposit":
-                    String depositCurrency = tokens[1];
-                    double depositAmount = Double.parseDouble(tokens[2]);
-                    repository.deposit(depositCurrency, depositAmount);
-                    System.out.println("[BANK] Deposited " + depositAmount + " " + depositCurrency);
-                    break;
-
-                case "addinterest":
-                    if(tokens.length == 2){
-                        double percent = Double.parseDouble(tokens[1]);
-                        repository.addInterest(null, percent);
-                        System.out.println("[BANK] Added interest " + percent + "% to all currencies");
-                    }
-                    else{
-                        String interestCurrency = tokens[1];
-                        double percent = Double.parseDouble(tokens[2]);
-                        repository.addInterest(interestCurrency, percent);
-                        System.out.println("[BANK] Added interest " + percent + "% to " + interestCurrency);
-                    }
-                    
-                    break;
-
-                case "checktxstatus":
-                    repository.checkTxStatus(tokens[1]);
-                    break;
-
-                case "gethistory":
-                    repository.getHistory();
-                    break;
-
-                case "cleanhistory":
-                    repository.cleanHistory();
-                    break;
-
-                case "sleep":
-                    double seconds = Double.parseDouble(tokens[1]);
-                    repository.sleep(seconds);
-                    break;
-
-                case "exit":
-                    repository.exit(false);
-                    break;
-                case "exitinteractive":
-                    repository.exit(true);
-                    break;
-
-                default:
-                    System.out.println("[BANK] [ERROR] Unknown command: " + cmd);
-                    break;
-            }
+            operation.execute(repository);
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println("[BANK] [ERROR] Exception: " + e.getMessage());
@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// The banks membership in its group. Joins it, installs the state the MDS says to start from and then takes
+// ordered deltas from there. A watchdog notices when the MDS has gone quiet and no longer lists the bank as a member
+// (it was evicted, after a long pause for example) and joins again: from the log suffix past our state if the MDS
+// still holds it, otherwise the snapshot is streamed in chunks and replaces our state. It does the same when the
+// bank could not write its WAL, the rejoin checkpoints the state the bank has and logging starts over from there
+public class GroupMembership {
+
+    // Silence (no heartbeat, no delivery) after which the watchdog asks the MDS whether we are still a member
+    private static final long SILENCE_BEFORE_CHECK_MS = 3_000;
+    private static final long CHECK_INTERVAL_MS = 1_000;
+
+    private final MessageDeliveryService mds;
+    private final String accountName;
+    private final String bankBindingName;
+    private final BankRepository repository;
+    private final BankServiceImpl bankImpl;
+    private final ReplicaStore store; // null if the bank keeps its state in memory only
+
+    private ScheduledExecutorService watchdog;
+
+    public GroupMembership(MessageDeliveryService mds, String accountName, String bankBindingName,
+                           BankRepository repository, BankServiceImpl bankImpl, ReplicaStore store) {
+        this.mds = mds;
+        this.accountName = accountName;
+        this.bankBindingName = bankBindingName;
+        this.repository = repository;
+        this.bankImpl = bankImpl;
+        this.store = store;
+    }
+
+    // Joins the group from where our state is and starts taking ordered deltas. Returns the MDS's cumulative ack
+    // of our own transactions
+    public long join() throws IOException {
+        JoinReply reply = mds.joinGroup(accountName, bankBindingName, repository.getOrderCounter().get());
+        if(reply == null){
+            throw new IOException("The MDS could not reach " + bankBindingName);
+        }
+        if(reply.hasSnapshot()){
+            Pair snapshot = StateChunk.assemble(firstId -> mds.fetchSnapshotChunk(accountName, reply.snapshotId(), firstId));
+            repository.setState(snapshot);
+            // Before delivery starts, so nothing from past the snapshot gets wiped
+            repository.restartFromSnapshot(reply.acknowledged());
+            System.out.println("[BANK] Installed state at order counter " + snapshot.getOrderCounter());
+        }
+        if(store != null){
+            store.open(repository.getLedger(), repository.getOrderCounter().get());
+        }
+        // Accept ordered deltas from the point our state reflects
+        bankImpl.startDelivery(repository.getOrderCounter().get());
+        return reply.acknowledged();
+    }
+
+    // Starts checking that we are still a member
+    public void startWatchdog() {
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "membership-" + bankBindingName);
+            t.setDaemon(true);
+            return t;
+        });
+        watchdog.scheduleWithFixedDelay(this::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void check() {
+        if(repository.hasLeft()){
+            watchdog.shutdown();
+            return;
+        }
+        try {
+            if(bankImpl.hasStoreFailed()){
+                rejoin();
+                return;
+            }
+            if(bankImpl.millisSinceContact() < SILENCE_BEFORE_CHECK_MS){
+                return;
+            }
+            if(mds.getMemberNames(accountName).contains(bankBindingName)){
+                return;
+            }
+            System.out.println("[BANK] Evicted from group " + accountName + ", joining again");
+            rejoin();
+        } catch (IOException e) {
+            System.out.println("[BANK] Membership check failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Joins again from the state we have applied so far, join resets what a snapshot makes stale
+    private void rejoin() throws IOException, InterruptedException {
+        bankImpl.suspendDelivery();
+        join();
+        System.out.println("[BANK] Rejoined group " + accountName + " at order counter " + repository.getOrderCounter().get());
+    }
+}
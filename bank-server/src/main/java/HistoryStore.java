@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The executed transactions of a bank, stored by column instead of as Transaction objects.
+// Entries go into fixed size segments of parallel primitive arrays: order number, execution time in epoch millis,
+// opcode, currency, amount, the origin and sequence of the unique ID, and the text of commands that were not entered
+// in canonical form (null for the others). Currency codes and bank names are few, they are interned once into a
+// string table and stored as ids. Command text can be anything, it stays with its segment and is spilled with it.
+// Only the newest RESIDENT_SEGMENTS full segments stay on the heap, older ones are spilled to a file each and read
+// back only when a page of history asks for them, so a long running bank neither grows its heap with the history
+// nor makes an append cost more than a few array stores
+public class HistoryStore {
+
+    // An executed transaction as read back from the store
+    public record Entry(long orderNumber, long timestampMillis, Transaction transaction) {}
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int RESIDENT_SEGMENTS = 4;
+    private static final int NO_STRING = -1;
+    private static final Transaction.Opcode[] OPCODES = Transaction.Opcode.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Path spillDirectory;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    // Oldest first, the last one is the one being appended to
+    private final List<Segment> segments = new ArrayList<>();
+    private long spilledSegments; // names the spill files, never reused
+
+    public HistoryStore(Path spillDirectory) throws IOException {
+        this.spillDirectory = spillDirectory;
+        Files.createDirectories(spillDirectory);
+    }
+
+    // Records an executed transaction
+    public void append(Transaction transaction, long orderNumber, long timestampMillis) throws IOException {
+        lock.lock();
+        try {
+            Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (segment == null || segment.count == SEGMENT_SIZE) {
+                segment = new Segment();
+                segments.add(segment);
+                spillOldSegments();
+            }
+            int i = segment.count;
+            segment.orderNumbers[i] = orderNumber;
+            segment.timestamps[i] = timestampMillis;
+            segment.opcodes[i] = (byte) transaction.opcode().ordinal();
+            segment.currencies[i] = intern(transaction.currency());
+            segment.amounts[i] = transaction.amount();
+            segment.origins[i] = intern(transaction.origin());
+            segment.sequences[i] = transaction.sequence();
+            segment.texts[i] = transaction.text();
+            segment.count++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Number of entries since the store was created or last cleared
+    public long size() {
+        lock.lock();
+        try {
+            if (segments.isEmpty()) {
+                return 0;
+            }
+            return (long) (segments.size() - 1) * SEGMENT_SIZE + segments.get(segments.size() - 1).count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Up to count entries starting at position from (0 is the oldest entry), a spilled segment is mapped and read
+    // once for the whole page
+    public List<Entry> read(long from, int count) throws IOException {
+        lock.lock();
+        try {
+            List<Entry> page = new ArrayList<>();
+            long position = Math.max(from, 0);
+            while (page.size() < count) {
+                int index = (int) (position / SEGMENT_SIZE);
+                if (index >= segments.size()) {
+                    break;
+                }
+                Segment segment = segments.get(index);
+                if (segment.file != null) {
+                    segment = Segment.load(segment.file);
+                }
+                int offset = (int) (position % SEGMENT_SIZE);
+                if (offset >= segment.count) {
+                    break;
+                }
+                int n = Math.min(segment.count - offset, count - page.size());
+                for (int i = offset; i < offset + n; i++) {
+                    page.add(new Entry(segment.orderNumbers[i], segment.timestamps[i], transactionAt(segment, i)));
+                }
+                position += n;
+            }
+            return page;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops every entry and its spill file, the string table (currencies and banks) stays
+    public void clear() throws IOException {
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                if (segment.file != null) {
+                    Files.deleteIfExists(segment.file);
+                }
+            }
+            segments.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes the full segments past the resident limit to disk and lets go of their arrays
+    private void spillOldSegments() throws IOException {
+        int resident = 0;
+        for (int i = segments.size() - 2; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.file != null) {
+                break; // everything older is spilled already
+            }
+            if (++resident > RESIDENT_SEGMENTS) {
+                segment.spill(spillDirectory.resolve(String.format("history-%08d.seg", spilledSegments++)));
+            }
+        }
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    private String string(int id) {
+        return id == NO_STRING ? null : strings.get(id);
+    }
+
+    // The transaction is rebuilt from its columns, it is equal to the one that was appended
+    private Transaction transactionAt(Segment segment, int i) {
+        Transaction.Opcode opcode = OPCODES[segment.opcodes[i]];
+        String origin = string(segment.origins[i]);
+        if (opcode == Transaction.Opcode.RAW) {
+            return Transaction.of(segment.texts[i], origin, segment.sequences[i]);
+        }
+        return Transaction.of(opcode, string(segment.currencies[i]), segment.amounts[i], segment.texts[i], origin,
+                segment.sequences[i]);
+    }
+
+    // One block of entries, column by column. Once spilled the arrays are null and file holds them, little endian,
+    // in the order the fields are declared. The fixed size columns come first, then every text as its UTF-8 length
+    // (-1 for null) and bytes
+    private static final class Segment {
+        private static final int ENTRY_BYTES = 8 + 8 + 1 + 4 + 8 + 4 + 8;
+
+        long[] orderNumbers = new long[SEGMENT_SIZE];
+        long[] timestamps = new long[SEGMENT_SIZE];
+        byte[] opcodes = new byte[SEGMENT_SIZE];
+        int[] currencies = new int[SEGMENT_SIZE];
+        double[] amounts = new double[SEGMENT_SIZE];
+        int[] origins = new int[SEGMENT_SIZE];
+        long[] sequences = new long[SEGMENT_SIZE];
+        String[] texts = new String[SEGMENT_SIZE];
+        int count;
+        Path file;
+
+        // Only full segments are spilled, so every file holds SEGMENT_SIZE entries
+        void spill(Path target) throws IOException {
+            byte[][] encoded = new byte[SEGMENT_SIZE][];
+            int textBytes = 0;
+            for (int i = 0; i < SEGMENT_SIZE; i++) {
+                if (texts[i] != null) {
+                    encoded[i] = texts[i].getBytes(StandardCharsets.UTF_8);
+                    textBytes += encoded[i].length;
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(SEGMENT_SIZE * ENTRY_BYTES + SEGMENT_SIZE * 4 + textBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            int offset = 0;
+            buffer.slice(offset, SEGMENT_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(orderNumbers);
+            offset += SEGMENT_SIZE * 8;
+            buffer.slice(offset, SEGMENT_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(timestamps);
+            offset += SEGMENT_SIZE * 8;
+            buffer.put(offset, opcodes);
+            offset += SEGMENT_SIZE;
+            buffer.slice(offset, SEGMENT_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(currencies);
+            offset += SEGMENT_SIZE * 4;
+            buffer.slice(offset, SEGMENT_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(amounts);
+            offset += SEGMENT_SIZE * 8;
+            buffer.slice(offset, SEGMENT_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(origins);
+            offset += SEGMENT_SIZE * 4;
+            buffer.slice(offset, SEGMENT_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(sequences);
+            offset += SEGMENT_SIZE * 8;
+            buffer.position(offset);
+            for (byte[] text : encoded) {
+                if (text == null) {
+                    buffer.putInt(-1);
+                } else {
+                    buffer.putInt(text.length).put(text);
+                }
+            }
+            buffer.flip();
+
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            target.toFile().deleteOnExit();
+
+            file = target;
+            orderNumbers = null;
+            timestamps = null;
+            opcodes = null;
+            currencies = null;
+            amounts = null;
+            origins = null;
+            sequences = null;
+            texts = null;
+        }
+
+        // A resident copy of a spilled segment, bulk copied out of a mapping of its file
+        static Segment load(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (mapped.limit() < SEGMENT_SIZE * ENTRY_BYTES) {
+                    throw new IOException("Truncated history segment: " + file);
+                }
+                Segment segment = new Segment();
+                int offset = 0;
+                mapped.slice(offset, SEGMENT_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(segment.orderNumbers);
+                offset += SEGMENT_SIZE * 8;
+                mapped.slice(offset, SEGMENT_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(segment.timestamps);
+                offset += SEGMENT_SIZE * 8;
+                mapped.get(offset, segment.opcodes);
+                offset += SEGMENT_SIZE;
+                mapped.slice(offset, SEGMENT_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(segment.currencies);
+                offset += SEGMENT_SIZE * 4;
+                mapped.slice(offset, SEGMENT_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(segment.amounts);
+                offset += SEGMENT_SIZE * 8;
+                mapped.slice(offset, SEGMENT_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(segment.origins);
+                offset += SEGMENT_SIZE * 4;
+                mapped.slice(offset, SEGMENT_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(segment.sequences);
+                offset += SEGMENT_SIZE * 8;
+                mapped.order(ByteOrder.LITTLE_ENDIAN).position(offset);
+                try {
+                    for (int i = 0; i < SEGMENT_SIZE; i++) {
+                        int length = mapped.getInt();
+                        if (length >= 0) {
+                            byte[] text = new byte[length];
+                            mapped.get(text);
+                            segment.texts[i] = new String(text, StandardCharsets.UTF_8);
+                        }
+                    }
+                } catch (BufferUnderflowException e) {
+                    throw new IOException("Truncated history segment: " + file, e);
+                }
+                segment.count = SEGMENT_SIZE;
+                return segment;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+// A command compiled by CommandParser, validated and with its arguments already parsed.
+// Commands are compiled once when they are read, after that nobody looks at the command string again.
+// Ordered operations go through the MDS as a typed Transaction and come back as the same operation, they carry the
+// command line they were compiled from (null if unknown) only so history can show it as typed
+public sealed interface Operation {
+
+    void execute(BankRepository repository) throws Exception;
+
+    // Operations that change the replicated state and go through the MDS
+    sealed interface Ordered extends Operation {
+        Transaction toTransaction(String origin, long sequence);
+    }
+
+    // Ordered operations on a single currency (or all of them), the apply scheduler can make their ledger change
+    // itself and only have them report it
+    sealed interface CurrencyUpdate extends Ordered {
+        void reportApplied(BankRepository repository);
+    }
+
+    record Deposit(String currency, double amount, String command) implements CurrencyUpdate {
+        @Override
+        public void execute(BankRepository repository) {
+            repository.deposit(currency, amount);
+            System.out.println("[BANK] Deposited " + amount + " " + currency);
+        }
+
+        @Override
+        public void reportApplied(BankRepository repository) {
+            repository.depositApplied(currency, amount);
+            System.out.println("[BANK] Deposited " + amount + " " + currency);
+        }
+
+        @Override
+        public Transaction toTransaction(String origin, long sequence) {
+            return Transaction.of(Transaction.Opcode.DEPOSIT, currency, amount, command, origin, sequence);
+        }
+    }
+
+    // currency is null for interest on all currencies
+    record AddInterest(String currency, double percent, String command) implements CurrencyUpdate {
+        @Override
+        public void execute(BankRepository repository) {
+            repository.addInterest(currency, percent);
+            printApplied();
+        }
+
+        @Override
+        public void reportApplied(BankRepository repository) {
+            repository.addInterestApplied(currency, percent);
+            printApplied();
+        }
+
+        private void printApplied() {
+            if(currency == null){
+                System.out.println("[BANK] Added interest " + percent + "% to all currencies");
+            }
+            else{
+                System.out.println("[BANK] Added interest " + percent + "% to " + currency);
+            }
+        }
+
+        @Override
+        public Transaction toTransaction(String origin, long sequence) {
+            return Transaction.of(Transaction.Opcode.ADD_INTEREST, currency, percent, command, origin, sequence);
+        }
+    }
+
+    // An ordered transaction that did not parse where it was created, it is reported and skipped
+    record Unparsed(String command) implements Operation {
+        @Override
+        public void execute(BankRepository repository) {
+            System.out.println("[BANK] [ERROR] Could not apply ´" + command + "´");
+        }
+    }
+
+    // getSyncedBalance, answered from the local state once it has caught up with the MDS's committed sequence
+    record SyncedBalance(String currency) implements Operation {
+        @Override
+        public void execute(BankRepository repository) {
+            repository.getSyncedBalance(currency);
+        }
+    }
+
+    record QuickBalance(String currency) implements Operation {
+        @Override
+        public void execute(BankRepository repository) {
+            repository.getQuickBalance(currency);
+        }
+    }
+
+    record MemberInfo() implements Operation {
+        @Override
+        public void execute(BankRepository repository) throws Exception {
+            repository.memberInfo(repository.getAccountName());
+        }
+    }
+
+    record CheckTxStatus(String id) implements Operation {
+        @Override
+        public void execute(BankRepository repository) {
+            repository.checkTxStatus(id);
+        }
+    }
+
+    record GetHistory() implements Operation {
+        @Override
+        public void execute(BankRepository repository) {
+            repository.getHistory();
+        }
+    }
+
+    // getHistory <from> <count>, one page of the executed transactions
+    record GetHistoryPage(long from, int count) implements Operation {
+        @Override
+        public void execute(BankRepository repository) {
+            repository.getHistory(from, count);
+        }
+    }
+
+    record CleanHistory() implements Operation {
+        @Override
+        public void execute(BankRepository repository) {
+            repository.cleanHistory();
+        }
+    }
+
+    record Sleep(double seconds) implements Operation {
+        @Override
+        public void execute(BankRepository repository) throws Exception {
+            repository.sleep(seconds);
+        }
+    }
+
+    record Exit(boolean interactive) implements Operation {
+        @Override
+        public void execute(BankRepository repository) throws Exception {
+            repository.exit(interactive);
+        }
+    }
+
+    // The operation an ordered transaction stands for, a switch on the opcode with no string work
+    static Operation of(Transaction transaction) {
+        return switch (transaction.opcode()) {
+            case DEPOSIT -> new Deposit(transaction.currency(), transaction.amount(), transaction.text());
+            case ADD_INTEREST -> new AddInterest(transaction.currency(), transaction.amount(), transaction.text());
+            case RAW -> new Unparsed(transaction.text());
+        };
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+// The bank's outstanding transactions, numbered with a monotonically increasing local sequence.
+// Three cursors move through it: the MDS's cumulative ack (everything up to it has been ordered), the next
+// sequence to send, and the head, the oldest transaction not yet applied locally. Applied transactions
+// leave from the head, so dropping them is O(1) amortized, and only transactions past the ack are ever resent
+public class Outbox {
+
+    // An outstanding transaction, its local sequence and when it was queued
+    public record Entry(Transaction transaction, long sequence, long queuedAtNanos) {}
+
+    private final String bankBindingName;
+
+    // entries.get(head) has sequence headSequence, everything before head has been applied
+    private final List<Entry> entries = new ArrayList<>();
+    private int head = 0;
+    private long headSequence = 0;
+
+    private long nextSequence = 0;  // sequence of the next appended transaction
+    private long ackedSequence = -1; // highest sequence the MDS has ordered
+    private long sendSequence = 0;  // next sequence to send
+
+    // Futures of callers waiting for the outbox to drain, by the head sequence that completes them
+    private final TreeMap<Long, List<CompletableFuture<Void>>> drainWaiters = new TreeMap<>();
+
+    public Outbox(String bankBindingName) {
+        this.bankBindingName = bankBindingName;
+    }
+
+    // Numbers transactions from sequence on, for a bank that restarts under a name the MDS already knows.
+    // Only valid before anything has been appended
+    public synchronized void startAt(long sequence) {
+        if (nextSequence != headSequence || !entries.isEmpty()) {
+            throw new IllegalStateException("Outbox already in use");
+        }
+        headSequence = sequence;
+        nextSequence = sequence;
+        sendSequence = sequence;
+        ackedSequence = sequence - 1;
+    }
+
+    // Appends an operation as a new transaction with the next local sequence, its id is "bankName:sequence"
+    public synchronized Transaction append(Operation.Ordered operation) {
+        Transaction transaction = operation.toTransaction(bankBindingName, nextSequence);
+        entries.add(new Entry(transaction, nextSequence, System.nanoTime()));
+        nextSequence++;
+        notifyAll();
+        return transaction;
+    }
+
+    // Waits until batchSize transactions are unsent or the oldest unsent one has waited lingerNanos,
+    // then returns up to batchSize unsent transactions and moves the send cursor past them
+    public synchronized List<Entry> nextBatch(int batchSize, long lingerNanos) throws InterruptedException {
+        while (unsentCount() == 0) {
+            wait();
+        }
+        long deadline = get(sendSequence).queuedAtNanos() + lingerNanos;
+        long remaining;
+        while (unsentCount() < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+            wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+        }
+
+        int count = (int) Math.min(unsentCount(), batchSize);
+        List<Entry> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(get(sendSequence + i));
+        }
+        sendSequence += count;
+        return batch;
+    }
+
+    // Cumulative ack from the MDS, everything up to ackedSequence has been ordered.
+    // If the MDS stopped short of what was sent, sending resumes right after the ack
+    public synchronized void acknowledge(long ackedSequence, long sentUpTo) {
+        this.ackedSequence = Math.max(this.ackedSequence, ackedSequence);
+        if (this.ackedSequence < sentUpTo) {
+            rewind();
+        }
+    }
+
+    // Sending failed, resend everything the MDS has not acknowledged
+    public synchronized void rewind() {
+        sendSequence = Math.max(ackedSequence + 1, headSequence);
+        notifyAll();
+    }
+
+    // A transaction of this bank has been applied locally. Transactions are applied in sequence order, so
+    // everything up to it leaves the outbox. Waiters that are drained now are completed on the calling thread,
+    // after the outbox lock is released
+    public void applied(long sequence) {
+        List<CompletableFuture<Void>> drained = new ArrayList<>();
+        synchronized (this) {
+            while (headSequence <= sequence && head < entries.size()) {
+                entries.set(head, null);
+                head++;
+                headSequence++;
+            }
+            // Compact once the applied prefix is the larger part of the list
+            if (head > entries.size() / 2) {
+                entries.subList(0, head).clear();
+                head = 0;
+            }
+            sendSequence = Math.max(sendSequence, headSequence);
+            ackedSequence = Math.max(ackedSequence, sequence);
+            Map<Long, List<CompletableFuture<Void>>> due = drainWaiters.headMap(headSequence, true);
+            due.values().forEach(drained::addAll);
+            due.clear();
+            notifyAll();
+        }
+        for (CompletableFuture<Void> waiter : drained) {
+            waiter.complete(null);
+        }
+    }
+
+    // Completes once every transaction queued before this call has been applied. Nobody waits for it, the future
+    // is completed by the thread that applies the last of them (or right away if there is nothing outstanding)
+    public CompletableFuture<Void> whenDrained() {
+        CompletableFuture<Void> drained = new CompletableFuture<>();
+        synchronized (this) {
+            if (headSequence < nextSequence) {
+                drainWaiters.computeIfAbsent(nextSequence, sequence -> new ArrayList<>()).add(drained);
+                return drained;
+            }
+        }
+        drained.complete(null);
+        return drained;
+    }
+
+    // Copy of the outstanding transactions, oldest first
+    public synchronized List<Transaction> getTransactions() {
+        List<Transaction> out = new ArrayList<>(entries.size() - head);
+        for (int i = head; i < entries.size(); i++) {
+            out.add(entries.get(i).transaction());
+        }
+        return out;
+    }
+
+    private Entry get(long sequence) {
+        return entries.get(head + (int) (sequence - headSequence));
+    }
+
+    private long unsentCount() {
+        return nextSequence - sendSequence;
+    }
+}
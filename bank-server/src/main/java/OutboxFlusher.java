@@ -0,0 +1,85 @@
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Sends the outbox to the MDS in adaptive batches.
+// A batch goes out as soon as batchSize transactions are waiting or the oldest one has waited lingerMillis,
+// whichever comes first. Only unsent transactions are included, the MDS answers with a cumulative ack and
+// anything past the ack is resent
+public class OutboxFlusher {
+
+    // Pause before retrying a batch the MDS could not take
+    private static final long RETRY_BACKOFF_MS = 500;
+
+    private final MessageDeliveryService messageDeliveryService;
+    private final String accountName;
+    private final Outbox outbox;
+    private final int batchSize;
+    private final long lingerNanos;
+
+    // Statistics, guarded by this
+    private long batches = 0;
+    private long sentTransactions = 0;
+    private long totalQueueingNanos = 0;
+    private long maxQueueingNanos = 0;
+
+    public OutboxFlusher(MessageDeliveryService messageDeliveryService, String accountName, Outbox outbox,
+                         int batchSize, long lingerMillis) {
+        this.messageDeliveryService = messageDeliveryService;
+        this.accountName = accountName;
+        this.outbox = outbox;
+        this.batchSize = batchSize;
+        this.lingerNanos = lingerMillis * 1_000_000L;
+    }
+
+    // Starts the flusher thread
+    public void start(String bankBindingName) {
+        Thread thread = new Thread(this::run, "outbox-flusher-" + bankBindingName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                List<Outbox.Entry> batch = outbox.nextBatch(batchSize, lingerNanos);
+
+                List<Transaction> transactions = new ArrayList<>(batch.size());
+                for (Outbox.Entry entry : batch) {
+                    transactions.add(entry.transaction());
+                }
+
+                try {
+                    long ack = messageDeliveryService.sendTransactions(accountName, new TransactionBatch(transactions));
+                    outbox.acknowledge(ack, batch.get(batch.size() - 1).sequence());
+                    record(batch);
+                } catch (RemoteException e) {
+                    System.out.println("[BANK] Sending batch to MDS failed, retrying: " + e.getMessage());
+                    outbox.rewind();
+                    Thread.sleep(RETRY_BACKOFF_MS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void record(List<Outbox.Entry> batch) {
+        long now = System.nanoTime();
+        batches++;
+        sentTransactions += batch.size();
+        for (Outbox.Entry entry : batch) {
+            long queueing = now - entry.queuedAtNanos();
+            totalQueueingNanos += queueing;
+            maxQueueingNanos = Math.max(maxQueueingNanos, queueing);
+        }
+    }
+
+    // Achieved batch sizes and queueing delay so far
+    public synchronized String report() {
+        double averageBatch = batches == 0 ? 0 : sentTransactions / (double) batches;
+        double averageQueueingMs = sentTransactions == 0 ? 0 : totalQueueingNanos / (double) sentTransactions / 1e6;
+        return String.format("[BANK] Outbox: %d batches, %d transactions, avg batch %.1f, avg queueing %.1f ms, max queueing %.1f ms",
+                batches, sentTransactions, averageBatch, averageQueueingMs, maxQueueingNanos / 1e6);
+    }
+}
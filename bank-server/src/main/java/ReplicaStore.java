@@ -0,0 +1,180 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Durable state of a bank replica under data/<bankBindingName>: a LedgerCheckpoint plus a write-ahead log
+// of every ordered transaction applied since. Each applied batch is one WAL record and one fsync.
+// Every checkpointInterval transactions the ledger is checkpointed and the WAL starts over, so recovery reads one
+// checkpoint and at most one interval of log, no matter how long the account's history is
+public class ReplicaStore {
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String WAL_PREFIX = "wal-";
+    private static final String WAL_SUFFIX = ".log";
+
+    // Record header: payload length and CRC32 of the payload
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final long checkpointInterval;
+
+    private FileChannel wal; // active WAL segment, named after the order counter it starts at
+    private long lastCheckpoint;
+
+    public ReplicaStore(Path directory, long checkpointInterval) throws IOException {
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+        Files.createDirectories(directory);
+    }
+
+    // Restores the latest checkpoint into the repository and replays the WAL on top of it.
+    // Returns false if the directory holds no state at all
+    public boolean recover(BankRepository repository) throws IOException {
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        List<Path> segments = walSegments();
+        if (!Files.exists(checkpointFile) && segments.isEmpty()) {
+            return false;
+        }
+
+        if (Files.exists(checkpointFile)) {
+            repository.setState(checkpointFile);
+        }
+
+        // Replay every logged transaction past the checkpoint, in order
+        long counter = repository.getOrderCounter().get();
+        for (Path segment : segments) {
+            counter = replay(segment, repository.getLedger(), counter);
+        }
+        repository.getOrderCounter().set(counter);
+        return true;
+    }
+
+    // Replays one segment from counter on, returns the counter after the last entry applied.
+    // A torn or corrupt record ends the segment, it is cut off there
+    private long replay(Path segment, CurrencyLedger ledger, long counter) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            long position = 0;
+            while (true) {
+                header.clear();
+                if (channel.read(header, position) < HEADER_BYTES) {
+                    break;
+                }
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length <= 0 || position + HEADER_BYTES + length > channel.size()) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                channel.read(payload, position + HEADER_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+                long first = in.readLong();
+                List<Transaction> entries = TransactionCodec.read(in);
+                if (first > counter) {
+                    throw new IOException("WAL " + segment + " skips from " + counter + " to " + first);
+                }
+                // Entries below the counter are already in the checkpoint
+                for (int i = (int) (counter - first); i < entries.size(); i++) {
+                    ledger.apply(entries.get(i));
+                    ledger.recordApplied(entries.get(i));
+                    counter++;
+                }
+                position += HEADER_BYTES + length;
+            }
+            if (position < channel.size()) {
+                System.out.println("[BANK] Cutting torn WAL record off " + segment.getFileName() + " at " + position);
+                channel.truncate(position);
+            }
+        }
+        return counter;
+    }
+
+    // Starts logging from the state the bank begins with: checkpoints it and opens a fresh WAL segment
+    public void open(CurrencyLedger ledger, long counter) throws IOException {
+        checkpoint(ledger, counter);
+    }
+
+    // Logs a batch of ordered transactions that has been applied, the first one had order counter firstCounter.
+    // The batch is forced to disk before returning
+    public void append(long firstCounter, List<Transaction> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(firstCounter);
+        TransactionCodec.write(out, entries);
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (record.hasRemaining()) {
+            wal.write(record);
+        }
+        wal.force(false);
+    }
+
+    // Checkpoints the ledger if checkpointInterval transactions have been logged since the last checkpoint
+    public void checkpointIfDue(CurrencyLedger ledger, long counter) throws IOException {
+        if (counter - lastCheckpoint >= checkpointInterval) {
+            checkpoint(ledger, counter);
+        }
+    }
+
+    // Writes the checkpoint next to the old one and moves it into place, then starts a new WAL segment at
+    // counter and deletes the segments the checkpoint has made obsolete
+    private void checkpoint(CurrencyLedger ledger, long counter) throws IOException {
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            LedgerCheckpoint.write(channel, ledger, counter);
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        if (wal != null) {
+            wal.close();
+        }
+        Path active = directory.resolve(segmentName(counter));
+        wal = FileChannel.open(active, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        for (Path segment : walSegments()) {
+            if (!segment.equals(active)) {
+                Files.delete(segment);
+            }
+        }
+        lastCheckpoint = counter;
+    }
+
+    // WAL segments in the order they were written
+    private List<Path> walSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(WAL_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Zero padded so the names sort in counter order
+    private static String segmentName(long counter) {
+        return String.format("%s%020d%s", WAL_PREFIX, counter, WAL_SUFFIX);
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+// Writes the results file of a bank off the calling thread.
+// log() only puts the line in a bounded ring buffer, a writer thread drains whatever has piled up and writes it
+// to one FileChannel that stays open, so a burst of transactions costs one write instead of an open/write/close
+// per line. The lines and line endings are exactly what the old PrintWriter.println produced
+public class ResultLogger {
+
+    // When written lines are forced to disk
+    public enum Durability {
+        OS,    // Leave it to the OS, like closing a FileWriter did
+        BATCH  // fsync after every batch the writer thread writes
+    }
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    // Formatted timestamp for the current second, shared by every logger in the JVM
+    private record CachedTimestamp(long second, String text) {}
+    private static volatile CachedTimestamp cachedTimestamp = new CachedTimestamp(-1, "");
+
+    // A line to write, or a flush request (message is null) that is done once everything before it is written
+    private record Entry(String message, CountDownLatch done) {}
+
+    private final BlockingQueue<Entry> ringBuffer;
+    private final FileChannel channel;
+    private final Durability durability;
+    private final Charset charset = Charset.defaultCharset();
+
+    public ResultLogger(Path file, Durability durability, int capacity) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.durability = durability;
+        this.ringBuffer = new ArrayBlockingQueue<>(capacity);
+
+        Thread writer = new Thread(this::run, "result-logger-" + file.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Queues a line, only blocks if the writer is a whole buffer behind
+    public void log(String message) {
+        enqueue(new Entry(message, null));
+    }
+
+    // Blocks until every line logged before this call has been written (and forced, with BATCH durability)
+    public void flush() {
+        CountDownLatch done = new CountDownLatch(1);
+        enqueue(new Entry(null, done));
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        try {
+            ringBuffer.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // "HH:mm:ss" for now, formatted once per second. The text comes from the same reading of the clock as the
+    // second it is cached under, so it can never belong to the neighbouring second
+    public static String timestamp() {
+        long now = System.currentTimeMillis();
+        long second = Math.floorDiv(now, 1000);
+        CachedTimestamp cached = cachedTimestamp;
+        if (cached.second() != second) {
+            cached = new CachedTimestamp(second, timestamp(now));
+            cachedTimestamp = cached;
+        }
+        return cached.text();
+    }
+
+    // "HH:mm:ss" for a point in time, for timestamps that were stored as epoch millis
+    public static String timestamp(long epochMillis) {
+        return LocalTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()).format(FORMATTER);
+    }
+
+    @SuppressWarnings("CallToPrintStackTrace")
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            try {
+                batch.add(ringBuffer.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            ringBuffer.drainTo(batch);
+
+            text.setLength(0);
+            for (Entry entry : batch) {
+                if (entry.message() != null) {
+                    text.append(entry.message()).append(LINE_SEPARATOR);
+                }
+            }
+            try {
+                ByteBuffer bytes = charset.encode(text.toString());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                if (durability == Durability.BATCH) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            for (Entry entry : batch) {
+                if (entry.done() != null) {
+                    entry.done().countDown();
+                }
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+// Versioned, immutable snapshots of a bank's state, keyed by the order counter they were taken at.
+// A snapshot is published every time an ordered batch has been applied. Readers either get a published version
+// right away or a future that completes when the bank gets there, nobody waits on the apply thread
+public class SnapshotStore {
+
+    // How many recent versions are kept
+    private static final int RETAINED_VERSIONS = 64;
+
+    private final TreeMap<Long, Pair> versions = new TreeMap<>();
+
+    // Readers waiting for an order counter the bank has not reached yet
+    private final TreeMap<Long, List<CompletableFuture<Pair>>> waiters = new TreeMap<>();
+    // Readers waiting for the version at exactly that order counter
+    private final TreeMap<Long, List<CompletableFuture<Pair>>> exactWaiters = new TreeMap<>();
+
+    // Takes a copy of the ledger and publishes it as the version for orderCounter, nobody writes to the copy
+    public void publish(CurrencyLedger ledger, long orderCounter) {
+        Pair snapshot = new Pair(new CurrencyLedger(ledger), orderCounter);
+
+        List<CompletableFuture<Pair>> ready = new ArrayList<>();
+        List<CompletableFuture<Pair>> missed = new ArrayList<>();
+        synchronized (this) {
+            versions.put(orderCounter, snapshot);
+            while (versions.size() > RETAINED_VERSIONS) {
+                versions.pollFirstEntry();
+            }
+
+            // Everyone waiting for this counter or an earlier one can have this version
+            Map<Long, List<CompletableFuture<Pair>>> reached = waiters.headMap(orderCounter, true);
+            reached.values().forEach(ready::addAll);
+            reached.clear();
+
+            // Exact readers get this version only if it is theirs, a counter the bank went past inside a batch
+            // never gets a version
+            Map<Long, List<CompletableFuture<Pair>>> passed = exactWaiters.headMap(orderCounter, true);
+            List<CompletableFuture<Pair>> exact = passed.remove(orderCounter);
+            if (exact != null) {
+                ready.addAll(exact);
+            }
+            passed.values().forEach(missed::addAll);
+            passed.clear();
+        }
+        // Complete outside the lock, callbacks may run on this thread
+        ready.forEach(future -> future.complete(snapshot));
+        missed.forEach(future -> future.complete(null));
+    }
+
+    // The most recently published version, null before the bank has installed its state
+    public synchronized Pair latest() {
+        Map.Entry<Long, Pair> entry = versions.lastEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    // The version taken at orderCounter. Snapshots are only taken between batches, so if the counter falls inside
+    // a batch this is the first version after it. If the bank has not got there yet the future completes later
+    public synchronized CompletableFuture<Pair> at(long orderCounter) {
+        Map.Entry<Long, Pair> entry = versions.ceilingEntry(orderCounter);
+        if (entry != null) {
+            return CompletableFuture.completedFuture(entry.getValue());
+        }
+        CompletableFuture<Pair> future = new CompletableFuture<>();
+        waiters.computeIfAbsent(orderCounter, counter -> new ArrayList<>()).add(future);
+        return future;
+    }
+
+    // The version taken at exactly orderCounter. Completes with null if that version is not retained, because it
+    // has been dropped or because the counter fell inside a batch. If the bank has not got there yet the future
+    // completes later
+    public synchronized CompletableFuture<Pair> exactly(long orderCounter) {
+        Pair version = versions.get(orderCounter);
+        if (version != null) {
+            return CompletableFuture.completedFuture(version);
+        }
+        if (!versions.isEmpty() && versions.lastKey() > orderCounter) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Pair> future = new CompletableFuture<>();
+        exactWaiters.computeIfAbsent(orderCounter, counter -> new ArrayList<>()).add(future);
+        return future;
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Status of every transaction this bank has seen, by origin bank and sequence.
+// A transaction moves OUTSTANDING -> ORDERED (with its global sequence) -> APPLIED (with the time), never back,
+// so a late update from a slower path cannot undo a newer one. The last RECENT_CAPACITY applied transactions keep
+// their details, older ones are compacted to one bit per sequence in a bitmap of their origin.
+// A lookup is two hash lookups and no string splitting beyond finding the last ':'
+public class TxStatusIndex {
+
+    private static final int RECENT_CAPACITY = 10_000;
+
+    private static final class Entry {
+        TxStatus.State state;
+        long sequence = -1;
+        long appliedAtMillis = -1;
+
+        Entry(TxStatus.State state) {
+            this.state = state;
+        }
+    }
+
+    // Transactions of one origin bank, by their local sequence
+    private static final class Origin {
+        final Map<Long, Entry> recent = new HashMap<>();
+        final BitSet compacted = new BitSet(); // applied and evicted from recent
+    }
+
+    private record Applied(Origin origin, long sequence) {}
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Origin> origins = new HashMap<>();
+    private final ArrayDeque<Applied> appliedOrder = new ArrayDeque<>(); // oldest applied first
+
+    // Queued in this bank's outbox
+    public void outstanding(Transaction transaction) {
+        lock.lock();
+        try {
+            advance(transaction, TxStatus.State.OUTSTANDING);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Delivered by the MDS with global order number sequence
+    public void ordered(Transaction transaction, long sequence) {
+        lock.lock();
+        try {
+            Entry entry = advance(transaction, TxStatus.State.ORDERED);
+            if (entry != null) {
+                entry.sequence = sequence;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Applied to the ledger at the given time
+    public void applied(Transaction transaction, long sequence, long timestampMillis) {
+        lock.lock();
+        try {
+            Entry entry = advance(transaction, TxStatus.State.APPLIED);
+            if (entry == null) {
+                return;
+            }
+            entry.sequence = sequence;
+            entry.appliedAtMillis = timestampMillis;
+            appliedOrder.addLast(new Applied(origins.get(transaction.origin()), transaction.sequence()));
+            while (appliedOrder.size() > RECENT_CAPACITY) {
+                compact(appliedOrder.removeFirst());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Forgets every transaction, for a bank whose state was replaced by a snapshot
+    public void clear() {
+        lock.lock();
+        try {
+            origins.clear();
+            appliedOrder.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Status of each unique ID, in the order asked for. Malformed IDs are UNKNOWN
+    public List<TxStatus> lookup(List<String> uniqueIds) {
+        List<TxStatus> statuses = new ArrayList<>(uniqueIds.size());
+        lock.lock();
+        try {
+            for (String uniqueId : uniqueIds) {
+                statuses.add(lookup(uniqueId));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return statuses;
+    }
+
+    private TxStatus lookup(String uniqueId) {
+        int separator = uniqueId == null ? -1 : uniqueId.lastIndexOf(':');
+        if (separator < 0) {
+            return new TxStatus(uniqueId, TxStatus.State.UNKNOWN, -1, -1);
+        }
+        long sequence;
+        try {
+            sequence = Long.parseLong(uniqueId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return new TxStatus(uniqueId, TxStatus.State.UNKNOWN, -1, -1);
+        }
+
+        Origin origin = origins.get(uniqueId.substring(0, separator));
+        if (origin == null) {
+            return new TxStatus(uniqueId, TxStatus.State.UNKNOWN, -1, -1);
+        }
+        Entry entry = origin.recent.get(sequence);
+        if (entry != null) {
+            return new TxStatus(uniqueId, entry.state, entry.sequence, entry.appliedAtMillis);
+        }
+        if (sequence >= 0 && sequence <= Integer.MAX_VALUE && origin.compacted.get((int) sequence)) {
+            return new TxStatus(uniqueId, TxStatus.State.APPLIED, -1, -1);
+        }
+        return new TxStatus(uniqueId, TxStatus.State.UNKNOWN, -1, -1);
+    }
+
+    // Moves the transaction forward to state, returns null if it already is there or further along
+    private Entry advance(Transaction transaction, TxStatus.State state) {
+        Origin origin = origins.computeIfAbsent(transaction.origin(), name -> new Origin());
+        Entry entry = origin.recent.get(transaction.sequence());
+        if (entry == null) {
+            long sequence = transaction.sequence();
+            if (sequence >= 0 && sequence <= Integer.MAX_VALUE && origin.compacted.get((int) sequence)) {
+                return null;
+            }
+            entry = new Entry(state);
+            origin.recent.put(sequence, entry);
+            return entry;
+        }
+        if (entry.state.compareTo(state) >= 0) {
+            return null;
+        }
+        entry.state = state;
+        return entry;
+    }
+
+    // Sequences that do not fit the bitmap keep their entry
+    private void compact(Applied applied) {
+        if (applied.sequence() < 0 || applied.sequence() > Integer.MAX_VALUE) {
+            return;
+        }
+        applied.origin().recent.remove(applied.sequence());
+        applied.origin().compacted.set((int) applied.sequence());
+    }
+}
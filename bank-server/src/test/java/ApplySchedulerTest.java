@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ApplySchedulerTest {
+
+    private static Map<String, Double> rates(int currencies) {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        for (int i = 0; i < currencies; i++) {
+            rates.put("C" + i, 1 + i % 7 / 10.0);
+        }
+        return rates;
+    }
+
+    // Deposits and interest spread over the currencies, with interest on everything, unknown currencies and RAW
+    // commands mixed in
+    private static List<Transaction> batch(int currencies, int size) {
+        Random random = new Random(7);
+        List<Transaction> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int kind = random.nextInt(100);
+            if (kind == 0) {
+                batch.add(Transaction.of(Transaction.Opcode.ADD_INTEREST, null, 0.5, "test", i));
+            } else if (kind == 1) {
+                batch.add(Transaction.of(Transaction.Opcode.DEPOSIT, "XXX", 1, "test", i));
+            } else if (kind == 2) {
+                batch.add(Transaction.of("withdraw USD 5", "test", i));
+            } else if (kind < 15) {
+                batch.add(Transaction.of(Transaction.Opcode.ADD_INTEREST, "C" + random.nextInt(currencies), 1.5, "test", i));
+            } else {
+                batch.add(Transaction.of(Transaction.Opcode.DEPOSIT, "C" + random.nextInt(currencies),
+                        random.nextInt(100_000) / 100.0, "test", i));
+            }
+        }
+        return batch;
+    }
+
+    // Runs through the scheduler, barriers on their own, the way the bank applies a batch
+    private static CurrencyLedger applyScheduled(ApplyScheduler scheduler, Map<String, Double> rates, List<Transaction> batch) {
+        CurrencyLedger ledger = new CurrencyLedger(rates);
+        int i = 0;
+        while (i < batch.size()) {
+            if (ApplyScheduler.isBarrier(batch.get(i))) {
+                ledger.apply(batch.get(i));
+                ledger.recordApplied(batch.get(i));
+                i++;
+                continue;
+            }
+            int end = ApplyScheduler.runEnd(batch, i);
+            boolean[] applied = scheduler.applyRun(ledger, batch, i, end);
+            for (int k = i; k < end; k++) {
+                assertEquals(applied[k - i], batch.get(k).opcode() != Transaction.Opcode.RAW
+                        && ledger.idOf(batch.get(k).currency()) >= 0);
+                ledger.recordApplied(batch.get(k));
+            }
+            i = end;
+        }
+        return ledger;
+    }
+
+    private static CurrencyLedger applySerially(Map<String, Double> rates, List<Transaction> batch) {
+        CurrencyLedger ledger = new CurrencyLedger(rates);
+        for (Transaction transaction : batch) {
+            ledger.apply(transaction);
+            ledger.recordApplied(transaction);
+        }
+        return ledger;
+    }
+
+    private static long[] balanceBits(CurrencyLedger ledger) {
+        long[] bits = new long[ledger.size()];
+        for (int id = 0; id < ledger.size(); id++) {
+            bits[id] = Double.doubleToRawLongBits(ledger.balance(id));
+        }
+        return bits;
+    }
+
+    @Test
+    void parallelRunsEndInTheSerialState() {
+        Map<String, Double> rates = rates(50);
+        List<Transaction> batch = batch(50, 20_000);
+
+        CurrencyLedger serial = applySerially(rates, batch);
+        // Threshold 0 splits every run over the pool
+        CurrencyLedger parallel = applyScheduled(new ApplyScheduler(0), rates, batch);
+
+        assertArrayEquals(balanceBits(serial), balanceBits(parallel));
+        assertEquals(serial.digest(), parallel.digest());
+    }
+
+    @Test
+    void shortRunsStayOnTheCallingThreadWithTheSameResult() {
+        Map<String, Double> rates = rates(5);
+        List<Transaction> batch = batch(5, 500);
+
+        CurrencyLedger serial = applySerially(rates, batch);
+        CurrencyLedger scheduled = applyScheduled(new ApplyScheduler(Integer.MAX_VALUE), rates, batch);
+
+        assertArrayEquals(balanceBits(serial), balanceBits(scheduled));
+        assertEquals(serial.digest(), scheduled.digest());
+    }
+
+    @Test
+    void onlyInterestOnEveryCurrencyIsABarrier() {
+        assertTrue(ApplyScheduler.isBarrier(Transaction.of("addInterest 2", "test", 0)));
+        assertFalse(ApplyScheduler.isBarrier(Transaction.of("addInterest USD 2", "test", 0)));
+        assertFalse(ApplyScheduler.isBarrier(Transaction.of("deposit USD 2", "test", 0)));
+        assertFalse(ApplyScheduler.isBarrier(Transaction.of("something else", "test", 0)));
+    }
+}
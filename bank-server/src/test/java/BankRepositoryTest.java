@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BankRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private FakeMessageDeliveryService mds;
+    private BankRepository repository;
+    private BankServiceImpl bank;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path rates = directory.resolve("rates.txt");
+        Files.write(rates, List.of("USD 1", "EUR 1.08"));
+        mds = new FakeMessageDeliveryService();
+        repository = new BankRepository("group", "bank-test", mds, rates.toString(), ResultLogger.Durability.OS);
+        bank = new BankServiceImpl(repository, null, new ApplyScheduler(Integer.MAX_VALUE));
+        bank.startDelivery(0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        bank.exitExecutor();
+        UnicastRemoteObject.unexportObject(bank, true);
+    }
+
+    @Test
+    void syncedBalanceSeesTheBanksOwnPrecedingDeposit() throws Exception {
+        Transaction deposit = repository.addOutstandingTransaction(new Operation.Deposit("USD", 5, "deposit USD 5"));
+
+        CompletableFuture<Double> balance = repository.getSyncedBalance("USD");
+
+        // The MDS orders the deposit, then delivers it
+        mds.committed = 1;
+        bank.deliverOrderedBatch(0, List.of(deposit));
+
+        assertEquals(5.0, balance.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void syncedBalanceWaitsForWhatTheMdsHasOrdered() throws Exception {
+        mds.committed = 1;
+        CompletableFuture<Double> balance = repository.getSyncedBalance("EUR");
+
+        bank.deliverOrderedBatch(0, List.of(Transaction.of(Transaction.Opcode.DEPOSIT, "USD", 2.16, "bank-other", 0)));
+
+        assertEquals(2.0, balance.get(5, TimeUnit.SECONDS), 1e-9);
+    }
+
+    // Orders nothing itself, the test says how far the group has got
+    private static class FakeMessageDeliveryService implements MessageDeliveryService {
+
+        volatile long committed = 0;
+
+        @Override
+        public JoinReply joinGroup(String groupName, String bankServer, long orderCounter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StateChunk fetchSnapshotChunk(String groupName, long snapshotId, int firstId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void leaveGroup(String groupName, String bankServer) {
+        }
+
+        @Override
+        public long sendTransactions(String groupName, List<Transaction> transactions) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getCommittedSequence(String groupName) {
+            return committed;
+        }
+
+        @Override
+        public int getNumberOfMembers(String groupName) {
+            return 1;
+        }
+
+        @Override
+        public List<String> getMemberNames(String groupName) {
+            return List.of("bank-test");
+        }
+
+        @Override
+        public boolean awaitExecution(String groupName, int numberOfReplicas) {
+            return true;
+        }
+    }
+}
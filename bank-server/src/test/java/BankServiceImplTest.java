@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BankServiceImplTest {
+
+    @TempDir
+    Path directory;
+
+    private BankRepository repository;
+    private BankServiceImpl bank;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path rates = directory.resolve("rates.txt");
+        Files.write(rates, List.of("USD 1", "EUR 1.08"));
+        repository = new BankRepository("group", "bank-test", null, rates.toString(), ResultLogger.Durability.OS);
+        bank = new BankServiceImpl(repository, null, new ApplyScheduler(Integer.MAX_VALUE));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        bank.exitExecutor();
+        UnicastRemoteObject.unexportObject(bank, true);
+    }
+
+    // Deposits of 1, 2, 4, ... USD from another bank, so every subset of them sums to a different balance
+    private static List<Transaction> deposits(long first, int count) {
+        List<Transaction> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(Transaction.of(Transaction.Opcode.DEPOSIT, "USD", Math.pow(2, first + i), "bank-other", first + i));
+        }
+        return batch;
+    }
+
+    private double usdAt(long orderCounter) throws Exception {
+        Pair snapshot = repository.getSnapshots().at(orderCounter).get(5, TimeUnit.SECONDS);
+        assertEquals(orderCounter, snapshot.getOrderCounter());
+        return snapshot.getLedger().balance(snapshot.getLedger().requireId("USD"));
+    }
+
+    @Test
+    void isNotReadyBeforeItsStateIsInstalled() throws Exception {
+        assertEquals(-1, bank.deliverOrderedBatch(0, deposits(0, 2)).nextSequence());
+    }
+
+    @Test
+    void holdsABatchThatOvertookAnEarlierOne() throws Exception {
+        bank.startDelivery(0);
+
+        assertEquals(0, bank.deliverOrderedBatch(2, deposits(2, 2)).nextSequence());
+        assertEquals(4, bank.deliverOrderedBatch(0, deposits(0, 2)).nextSequence());
+
+        assertEquals(1 + 2 + 4 + 8, usdAt(4));
+    }
+
+    @Test
+    void skipsWhatItAlreadyHas() throws Exception {
+        bank.startDelivery(0);
+
+        bank.deliverOrderedBatch(0, deposits(0, 3));
+        assertEquals(5, bank.deliverOrderedBatch(1, deposits(1, 4)).nextSequence());
+        // Entirely old
+        assertEquals(5, bank.deliverOrderedBatch(0, deposits(0, 2)).nextSequence());
+
+        assertEquals(1 + 2 + 4 + 8 + 16, usdAt(5));
+    }
+
+    @Test
+    void dropsBatchesOnceTheBufferIsFullAndResendsFromTheAck() throws Exception {
+        bank.startDelivery(0);
+
+        // Sequences 1..64 fit the buffer, 65 is dropped
+        for (long sequence = 1; sequence <= 65; sequence++) {
+            bank.deliverOrderedBatch(sequence, deposits(sequence, 1));
+        }
+        DeliveryAck ack = bank.deliverOrderedBatch(0, deposits(0, 1));
+        assertEquals(65, ack.nextSequence());
+
+        // The MDS resends from the high-water mark
+        assertEquals(66, bank.deliverOrderedBatch(65, deposits(65, 1)).nextSequence());
+    }
+}
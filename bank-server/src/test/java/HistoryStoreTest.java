@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryStoreTest {
+
+    @TempDir
+    Path directory;
+
+    // A mix of canonical, typed and raw commands, the raw and typed ones all with text of their own
+    private static Transaction transaction(long i) {
+        return switch ((int) (i % 4)) {
+            case 0 -> Transaction.of(Transaction.Opcode.DEPOSIT, "USD", i, "bank-" + (i % 3), i);
+            case 1 -> Transaction.of(Transaction.Opcode.DEPOSIT, "EUR", i, "deposit   EUR " + i + " # typed ø", "bank-a", i);
+            case 2 -> Transaction.of("raw command " + i, "bank-b", i);
+            default -> Transaction.of(Transaction.Opcode.ADD_INTEREST, null, 1.5, "bank-a", i);
+        };
+    }
+
+    @Test
+    void readsBackSpilledAndResidentEntries() throws IOException {
+        HistoryStore store = new HistoryStore(directory);
+        int count = 10 * 1024 + 7;
+        List<Transaction> appended = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            Transaction t = transaction(i);
+            appended.add(t);
+            store.append(t, i, 1_000 + i);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.findAny().isPresent(), "old segments are spilled");
+        }
+
+        assertEquals(count, store.size());
+        List<HistoryStore.Entry> all = store.read(0, count);
+        assertEquals(count, all.size());
+        for (int i = 0; i < count; i++) {
+            HistoryStore.Entry entry = all.get(i);
+            assertEquals(i, entry.orderNumber());
+            assertEquals(1_000 + i, entry.timestampMillis());
+            assertEquals(appended.get(i), entry.transaction());
+            assertEquals(appended.get(i).getCommand(), entry.transaction().getCommand());
+        }
+    }
+
+    @Test
+    void readsAPageAcrossSegments() throws IOException {
+        HistoryStore store = new HistoryStore(directory);
+        for (long i = 0; i < 8 * 1024; i++) {
+            store.append(transaction(i), i, i);
+        }
+
+        List<HistoryStore.Entry> page = store.read(1020, 10);
+        assertEquals(10, page.size());
+        assertEquals(1020, page.get(0).orderNumber());
+        assertEquals(transaction(1029), page.get(9).transaction());
+        assertEquals("raw command 1030", store.read(1030, 1).get(0).transaction().getCommand());
+    }
+
+    @Test
+    void clearDropsEntriesAndSpillFiles() throws IOException {
+        HistoryStore store = new HistoryStore(directory);
+        for (long i = 0; i < 8 * 1024; i++) {
+            store.append(transaction(i), i, i);
+        }
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertTrue(store.read(0, 10).isEmpty());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboxTest {
+
+    private static Outbox outboxWith(int transactions) {
+        Outbox outbox = new Outbox("bank-R1");
+        for (int i = 0; i < transactions; i++) {
+            outbox.append(new Operation.Deposit("USD", i, null));
+        }
+        return outbox;
+    }
+
+    private static List<Long> sequences(List<Outbox.Entry> batch) {
+        return batch.stream().map(Outbox.Entry::sequence).toList();
+    }
+
+    @Test
+    void numbersTransactionsFromTheStartSequence() {
+        Outbox outbox = new Outbox("bank-R1");
+        outbox.startAt(7);
+
+        Transaction transaction = outbox.append(new Operation.Deposit("USD", 1, null));
+
+        assertEquals(7, transaction.sequence());
+        assertEquals("bank-R1:7", transaction.uniqueId());
+    }
+
+    @Test
+    void resendsFromTheAckWhenTheMdsStoppedShort() throws InterruptedException {
+        Outbox outbox = outboxWith(6);
+
+        assertEquals(List.of(0L, 1L, 2L, 3L), sequences(outbox.nextBatch(4, 0)));
+        // The MDS only ordered up to 1 of the 0..3 we sent
+        outbox.acknowledge(1, 3);
+
+        assertEquals(List.of(2L, 3L, 4L, 5L), sequences(outbox.nextBatch(4, 0)));
+    }
+
+    @Test
+    void aFullAckDoesNotRewind() throws InterruptedException {
+        Outbox outbox = outboxWith(6);
+
+        outbox.nextBatch(4, 0);
+        outbox.acknowledge(3, 3);
+
+        assertEquals(List.of(4L, 5L), sequences(outbox.nextBatch(4, 0)));
+    }
+
+    @Test
+    void rewindAfterAFailedSendStartsPastTheAck() throws InterruptedException {
+        Outbox outbox = outboxWith(5);
+
+        outbox.nextBatch(2, 0);
+        outbox.acknowledge(1, 1);
+        outbox.nextBatch(2, 0);
+        outbox.rewind(); // sending 2..3 failed
+
+        assertEquals(List.of(2L, 3L, 4L), sequences(outbox.nextBatch(4, 0)));
+    }
+
+    @Test
+    void rewindNeverResendsWhatWasAppliedLocally() throws InterruptedException {
+        Outbox outbox = outboxWith(5);
+
+        outbox.nextBatch(5, 0);
+        // Delivered back and applied before the ack for them came in
+        outbox.applied(2);
+        outbox.rewind();
+
+        assertEquals(List.of(3L, 4L), sequences(outbox.nextBatch(5, 0)));
+        assertEquals(List.of(3L, 4L), outbox.getTransactions().stream().map(Transaction::sequence).toList());
+    }
+
+    @Test
+    void drainsOnceEverythingQueuedIsApplied() {
+        Outbox outbox = outboxWith(3);
+
+        var drained = outbox.whenDrained();
+        outbox.applied(1);
+        assertFalse(drained.isDone());
+        outbox.applied(2);
+        assertTrue(drained.isDone());
+    }
+}
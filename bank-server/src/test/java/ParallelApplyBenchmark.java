@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Applies large ordered batches to a ledger with many currencies, serially with CurrencyLedger.apply and through
+// the ApplyScheduler, and checks that both end in bit-identical ledgers with the same digest.
+// Every barrierEvery entries the batch has an addInterest on all currencies
+// Usage: ParallelApplyBenchmark [currencies] [batchSize] [barrierEvery] [rounds]
+public class ParallelApplyBenchmark {
+
+    public static void main(String[] args) {
+        int currencies = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int barrierEvery = args.length > 2 ? Integer.parseInt(args[2]) : 250_000;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        Map<String, Double> rates = new LinkedHashMap<>();
+        for (int i = 0; i < currencies; i++) {
+            rates.put("C" + i, 1 + i % 97 / 10.0);
+        }
+        List<Transaction> batch = batch(currencies, batchSize, barrierEvery);
+        ApplyScheduler scheduler = new ApplyScheduler(0);
+
+        System.out.printf("[BENCH] %d currencies, batches of %d, barrier every %d, %d threads%n",
+                currencies, batchSize, barrierEvery, Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < rounds; round++) {
+            CurrencyLedger serial = new CurrencyLedger(rates);
+            long start = System.nanoTime();
+            for (Transaction transaction : batch) {
+                serial.apply(transaction);
+            }
+            double serialMs = (System.nanoTime() - start) / 1e6;
+
+            CurrencyLedger parallel = new CurrencyLedger(rates);
+            start = System.nanoTime();
+            int i = 0;
+            while (i < batch.size()) {
+                if (ApplyScheduler.isBarrier(batch.get(i))) {
+                    parallel.apply(batch.get(i));
+                    i++;
+                    continue;
+                }
+                int end = ApplyScheduler.runEnd(batch, i);
+                scheduler.applyRun(parallel, batch, i, end);
+                i = end;
+            }
+            double parallelMs = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("[BENCH] round %2d serial %8.2f ms  parallel %8.2f ms  identical %b%n",
+                    round, serialMs, parallelMs, identical(serial, parallel));
+        }
+    }
+
+    // Deposits and single currency interest spread over every currency, with global interest as barriers
+    private static List<Transaction> batch(int currencies, int size, int barrierEvery) {
+        Random random = new Random(42);
+        List<Transaction> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (barrierEvery > 0 && i % barrierEvery == barrierEvery - 1) {
+                batch.add(Transaction.of(Transaction.Opcode.ADD_INTEREST, null, 0.5, "bench", i));
+            }
+            else if (i % 10 == 0) {
+                batch.add(Transaction.of(Transaction.Opcode.ADD_INTEREST, "C" + random.nextInt(currencies), 1.5, "bench", i));
+            }
+            else {
+                batch.add(Transaction.of(Transaction.Opcode.DEPOSIT, "C" + random.nextInt(currencies),
+                        random.nextInt(10_000) / 100.0, "bench", i));
+            }
+        }
+        return batch;
+    }
+
+    private static boolean identical(CurrencyLedger a, CurrencyLedger b) {
+        if (a.digest() != b.digest()) {
+            return false;
+        }
+        for (int id = 0; id < a.size(); id++) {
+            if (Double.doubleToRawLongBits(a.balance(id)) != Double.doubleToRawLongBits(b.balance(id))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
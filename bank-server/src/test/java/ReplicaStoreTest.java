@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicaStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private Path storeDirectory;
+    private BankRepository bank;
+    private long counter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storeDirectory = directory.resolve("store");
+        bank = repository();
+        counter = 0;
+    }
+
+    private BankRepository repository() throws IOException {
+        Path rates = directory.resolve("rates.txt");
+        if (!Files.exists(rates)) {
+            Files.write(rates, List.of("USD 1", "EUR 1.08", "NOK 0.093"));
+        }
+        return new BankRepository("group", "bank-test", null, rates.toString(), ResultLogger.Durability.OS);
+    }
+
+    private static List<Transaction> batch(long first, int size) {
+        List<Transaction> batch = new ArrayList<>(size);
+        String[] currencies = {"USD", "EUR", "NOK"};
+        for (int i = 0; i < size; i++) {
+            long sequence = first + i;
+            batch.add(sequence % 5 == 4
+                    ? Transaction.of("addInterest 1.5", "bank-R1", sequence)
+                    : Transaction.of("deposit " + currencies[(int) (sequence % 3)] + " " + (sequence + 0.25), "bank-R1", sequence));
+        }
+        return batch;
+    }
+
+    // What the bank does with a batch: apply it, then log it
+    private void applyAndLog(ReplicaStore store, List<Transaction> batch) throws IOException {
+        for (Transaction transaction : batch) {
+            bank.getLedger().apply(transaction);
+            bank.getLedger().recordApplied(transaction);
+        }
+        store.append(counter, batch);
+        counter += batch.size();
+    }
+
+    private static void assertSameState(CurrencyLedger expected, long expectedCounter, BankRepository recovered) {
+        assertEquals(expectedCounter, recovered.getOrderCounter().get());
+        assertEquals(expected.digest(), recovered.getLedger().digest());
+        for (int id = 0; id < expected.size(); id++) {
+            assertEquals(expected.balance(id), recovered.getLedger().balance(recovered.getLedger().requireId(expected.name(id))));
+        }
+    }
+
+    private List<Path> walSegments() throws IOException {
+        try (Stream<Path> files = Files.list(storeDirectory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("wal-")).sorted().toList();
+        }
+    }
+
+    @Test
+    void nothingToRecoverInAnEmptyDirectory() throws IOException {
+        assertFalse(new ReplicaStore(storeDirectory, 100).recover(repository()));
+    }
+
+    @Test
+    void replaysTheWalOnTopOfTheCheckpoint() throws IOException {
+        ReplicaStore store = new ReplicaStore(storeDirectory, 1_000);
+        store.open(bank.getLedger(), 0);
+        for (int i = 0; i < 4; i++) {
+            applyAndLog(store, batch(counter, 7));
+        }
+
+        BankRepository recovered = repository();
+        assertTrue(new ReplicaStore(storeDirectory, 1_000).recover(recovered));
+
+        assertSameState(bank.getLedger(), 28, recovered);
+    }
+
+    @Test
+    void checkpointingDropsTheSegmentsItCovers() throws IOException {
+        ReplicaStore store = new ReplicaStore(storeDirectory, 10);
+        store.open(bank.getLedger(), 0);
+        for (int i = 0; i < 6; i++) {
+            applyAndLog(store, batch(counter, 4));
+            store.checkpointIfDue(bank.getLedger(), counter);
+        }
+
+        assertEquals(1, walSegments().size());
+        BankRepository recovered = repository();
+        assertTrue(new ReplicaStore(storeDirectory, 10).recover(recovered));
+
+        assertSameState(bank.getLedger(), 24, recovered);
+    }
+
+    @Test
+    void cutsOffATornRecord() throws IOException {
+        ReplicaStore store = new ReplicaStore(storeDirectory, 1_000);
+        store.open(bank.getLedger(), 0);
+        applyAndLog(store, batch(counter, 5));
+        CurrencyLedger afterFirst = new CurrencyLedger(bank.getLedger());
+        applyAndLog(store, batch(counter, 5));
+
+        // The second record only made it halfway to disk
+        Path segment = walSegments().get(0);
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        BankRepository recovered = repository();
+        assertTrue(new ReplicaStore(storeDirectory, 1_000).recover(recovered));
+
+        assertSameState(afterFirst, 5, recovered);
+        assertTrue(Files.size(segment) < size - 3);
+    }
+}
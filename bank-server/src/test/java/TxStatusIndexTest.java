@@ -0,0 +1,79 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TxStatusIndexTest {
+
+    private static Transaction deposit(String origin, long sequence) {
+        return Transaction.of(Transaction.Opcode.DEPOSIT, "USD", 1, origin, sequence);
+    }
+
+    private static TxStatus status(TxStatusIndex index, String uniqueId) {
+        return index.lookup(List.of(uniqueId)).get(0);
+    }
+
+    @Test
+    void movesForwardOnly() {
+        TxStatusIndex index = new TxStatusIndex();
+        Transaction transaction = deposit("bank-R1", 0);
+
+        index.outstanding(transaction);
+        assertEquals(TxStatus.State.OUTSTANDING, status(index, "bank-R1:0").state());
+        index.ordered(transaction, 4);
+        index.applied(transaction, 4, 1234);
+        // A late report from a slower path
+        index.ordered(transaction, 4);
+        index.outstanding(transaction);
+
+        TxStatus status = status(index, "bank-R1:0");
+        assertEquals(TxStatus.State.APPLIED, status.state());
+        assertEquals(4, status.sequence());
+        assertEquals(1234, status.appliedAtMillis());
+    }
+
+    @Test
+    void compactsTheOldestAppliedTransactions() {
+        TxStatusIndex index = new TxStatusIndex();
+        int applied = 10_000 + 5;
+        for (int i = 0; i < applied; i++) {
+            index.applied(deposit("bank-R1", i), i, 1000 + i);
+        }
+
+        // Evicted from the recent entries, only the bit that says it was applied is left
+        TxStatus oldest = status(index, "bank-R1:0");
+        assertEquals(TxStatus.State.APPLIED, oldest.state());
+        assertEquals(-1, oldest.sequence());
+        assertEquals(-1, oldest.appliedAtMillis());
+
+        TxStatus newest = status(index, "bank-R1:" + (applied - 1));
+        assertEquals(applied - 1, newest.sequence());
+        assertEquals(1000 + applied - 1, newest.appliedAtMillis());
+
+        // A compacted transaction stays applied when it is reported again
+        index.outstanding(deposit("bank-R1", 0));
+        assertEquals(TxStatus.State.APPLIED, status(index, "bank-R1:0").state());
+    }
+
+    @Test
+    void unknownAndMalformedIds() {
+        TxStatusIndex index = new TxStatusIndex();
+        index.outstanding(deposit("bank-R1", 0));
+
+        assertEquals(TxStatus.State.UNKNOWN, status(index, "bank-R1:1").state());
+        assertEquals(TxStatus.State.UNKNOWN, status(index, "bank-R2:0").state());
+        assertEquals(TxStatus.State.UNKNOWN, status(index, "bank-R1").state());
+        assertEquals(TxStatus.State.UNKNOWN, status(index, "bank-R1:x").state());
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        TxStatusIndex index = new TxStatusIndex();
+        index.applied(deposit("bank-R1", 0), 0, 1);
+
+        index.clear();
+
+        assertEquals(TxStatus.State.UNKNOWN, status(index, "bank-R1:0").state());
+    }
+}
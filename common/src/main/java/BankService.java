@@ -5,10 +5,22 @@ import java.util.List;
 // RMI method interface for banking replication consistency
 public interface BankService extends Remote {
 
-    // For delivering transactions to the bank
-    boolean deliverOrderedBatch(List<Transaction> orderedTransactions) throws RemoteException;
+    // For delivering ordered transactions to the bank, firstSequence is the global order number of the first
+    // transaction in the list. Returns the next sequence the bank expects (its delivered high-water mark),
+    // or -1 if the bank has not installed its state yet, along with the digest of its last applied state
+    DeliveryAck deliverOrderedBatch(long firstSequence, List<Transaction> orderedTransactions) throws RemoteException;
 
-    // for getting a snapshot of the balance for banks joining when a view already exists
+    // Lightweight liveness probe, the MDS failure detector calls this periodically
+    void heartbeat() throws RemoteException;
+
+    // for getting the latest snapshot of the balance, an immutable copy tagged with its order counter
     Pair getBalance() throws RemoteException;
 
+    // for getting the snapshot taken at exactly an order counter, waits (bounded) until the bank has applied up to
+    // it. null if the bank does not hold that version (dropped, or the counter fell inside a batch)
+    Pair getBalanceAt(long orderCounter) throws RemoteException;
+
+    // A chunk of the banks current state starting at currency firstId, the MDS seeds a new group with it
+    StateChunk getStateChunk(int firstId) throws RemoteException;
+
 }
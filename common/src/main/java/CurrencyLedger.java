@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+// The balances of an account, one slot per currency.
+// Currency codes are interned to dense ids when the ledger is created, after that balances and rates live in
+// parallel double arrays and the set of currencies never changes. The total of the account is computed when it is
+// asked for, in the same order and with the same arithmetic as always, so printed balances do not drift from what
+// the banks have always reported. The ledger also keeps a digest of itself up to date: a rolling hash over every
+// ordered transaction recorded with recordApplied, and a sum of per-currency hashes of the balances that every
+// change adjusts in O(1).
+// Replicas that applied the same transactions to the same state have the same digest()
+public class CurrencyLedger implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient Map<String, Integer> ids; // rebuilt from names when deserialized
+    private final String[] names;
+    private final double[] rates; // rate to dollar
+    private final double[] balances;
+    private long operationDigest; // rolling hash of the ordered transactions applied so far
+    private transient long balanceHash; // sum of contribution(id) over all currencies, rebuilt when deserialized
+
+    // Currencies and their rate to dollar, ids follow the iteration order of the map
+    public CurrencyLedger(Map<String, Double> ratesToDollar) {
+        int size = ratesToDollar.size();
+        this.ids = new HashMap<>();
+        this.names = new String[size];
+        this.rates = new double[size];
+        this.balances = new double[size];
+
+        int id = 0;
+        for (Map.Entry<String, Double> entry : ratesToDollar.entrySet()) {
+            ids.put(entry.getKey(), id);
+            names[id] = entry.getKey();
+            rates[id] = entry.getValue();
+            id++;
+        }
+        this.balanceHash = hashBalances(balances);
+    }
+
+    // Copy constructor, for snapshots that must not change with the original. The id table is never modified
+    // after construction, so it is shared
+    public CurrencyLedger(CurrencyLedger other) {
+        this.ids = other.ids;
+        this.names = other.names;
+        this.rates = other.rates;
+        this.balances = other.balances.clone();
+        this.operationDigest = other.operationDigest;
+        this.balanceHash = other.balanceHash;
+    }
+
+    // A ledger restored from its arrays, for checkpoint loading. The arrays are taken over, not copied
+    public CurrencyLedger(String[] names, double[] rates, double[] balances, long operationDigest) {
+        this.ids = indexOf(names);
+        this.names = names;
+        this.rates = rates;
+        this.balances = balances;
+        this.operationDigest = operationDigest;
+        this.balanceHash = hashBalances(balances);
+    }
+
+    private static Map<String, Integer> indexOf(String[] names) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int id = 0; id < names.length; id++) {
+            ids.put(names[id], id);
+        }
+        return ids;
+    }
+
+    // Only the arrays go over the wire, the id table is derived from the names
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ids = indexOf(names);
+        balanceHash = hashBalances(balances);
+    }
+
+    private static long hashBalances(double[] balances) {
+        long hash = 0;
+        for (int id = 0; id < balances.length; id++) {
+            hash += contribution(balances, id);
+        }
+        return hash;
+    }
+
+    // Dense id of a currency code, -1 if the account does not hold it
+    public int idOf(String currency) {
+        Integer id = ids.get(currency);
+        return id == null ? -1 : id;
+    }
+
+    // Like idOf, but an unknown currency is an error
+    public int requireId(String currency) {
+        int id = idOf(currency);
+        if (id < 0) {
+            throw new IllegalArgumentException("Unknown currency: " + currency);
+        }
+        return id;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public double balance(int id) {
+        return balances[id];
+    }
+
+    public double rate(int id) {
+        return rates[id];
+    }
+
+    // Add amount to currency
+    public void deposit(int id, double amount) {
+        long before = contribution(id);
+        depositBalance(id, amount);
+        balanceHash += contribution(id) - before;
+    }
+
+    // Add interest in percent to currency
+    public void addInterest(int id, double percent) {
+        long before = contribution(id);
+        addInterestBalance(id, percent);
+        balanceHash += contribution(id) - before;
+    }
+
+    // The halves of deposit and addInterest: the balance change, and adjusting the balance hash. Changes to
+    // different currencies can run in parallel, the hash is a sum and its order does not matter
+    public void depositBalance(int id, double amount) {
+        balances[id] += amount;
+    }
+
+    public void addInterestBalance(int id, double percent) {
+        double before = balances[id];
+        balances[id] = (before * (percent / 100f)) + before;
+    }
+
+    public void addToBalanceHash(long delta) {
+        balanceHash += delta;
+    }
+
+    // What one currency adds to the balance hash, depends on its id and the exact bits of its balance
+    public long contribution(int id) {
+        return contribution(balances, id);
+    }
+
+    // Static so the constructors can use it before the object is complete
+    private static long contribution(double[] balances, int id) {
+        return mix(Double.doubleToRawLongBits(balances[id]) ^ mix(id + 1L));
+    }
+
+    // Folds the next ordered transaction into the rolling hash, every replica calls this for every ordered
+    // transaction (failed ones included) in order
+    public void recordApplied(Transaction tx) {
+        operationDigest = mix(operationDigest + tx.fingerprint());
+    }
+
+    // Digest of the whole state: the transactions applied so far and the balances
+    public long digest() {
+        return mix(operationDigest ^ mix(balanceHash));
+    }
+
+    public long operationDigest() {
+        return operationDigest;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Add interest in percent to every currency
+    public void addInterestToAll(double percent) {
+        for (int id = 0; id < balances.length; id++) {
+            addInterest(id, percent);
+        }
+    }
+
+    // Applies an ordered transaction with the same arithmetic the banks use, for replicas that replay the order
+    // without executing commands (the MDS shadow state, WAL recovery). Returns false if the transaction was
+    // skipped because it fails on the banks too (unknown currency, RAW command)
+    public boolean apply(Transaction tx) {
+        switch (tx.opcode()) {
+            case DEPOSIT: {
+                int id = idOf(tx.currency());
+                if (id < 0) {
+                    return false;
+                }
+                deposit(id, tx.amount());
+                return true;
+            }
+            case ADD_INTEREST: {
+                if (tx.currency() == null) {
+                    addInterestToAll(tx.amount());
+                    return true;
+                }
+                int id = idOf(tx.currency());
+                if (id < 0) {
+                    return false;
+                }
+                addInterest(id, tx.amount());
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    // Value of the whole account in the given currency: its own balance plus every other currency converted through
+    // dollars, added up in id order
+    public double total(int id) {
+        double total = balances[id];
+        for (int other = 0; other < balances.length; other++) {
+            if (other != id) {
+                total += (balances[other] * rates[other]) / rates[id];
+            }
+        }
+        return total;
+    }
+}
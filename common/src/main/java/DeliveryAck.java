@@ -0,0 +1,13 @@
+import java.io.Serializable;
+
+// A bank's answer to a delivered batch. nextSequence is the next global sequence it expects (its delivered
+// high-water mark), -1 if it has not installed its state yet. Batches are applied after the answer, so the digest
+// is the one of the last state the bank finished applying, at order counter appliedCounter.
+// durableSequence is how far the bank's state survives a crash (logged in its WAL, or applied if it keeps no WAL),
+// the MDS keeps its log past it so it can catch the bank up after a restart
+public record DeliveryAck(long nextSequence, long appliedCounter, long digest, long durableSequence) implements Serializable {
+
+    public static DeliveryAck notReady() {
+        return new DeliveryAck(-1, -1, 0, -1);
+    }
+}
@@ -0,0 +1,149 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Arguments and return values in NioTransport frames, each a tag byte followed by the value.
+// What goes back and forth on every batch (numbers, names, lists of transactions, delivery acks) has its own
+// binary form, transaction lists go through TransactionCodec. Everything else (snapshots, exceptions) falls back
+// to Java serialization inside the frame, those calls are rare. The bytes come from the network, so only the
+// repo's own value types, the java.lang and collection types they are made of and the exceptions a call can end
+// in are deserialized, anything else is rejected before it is instantiated
+public final class FrameCodec {
+
+    private static final ObjectInputFilter SERIALIZED_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=16;maxrefs=100000;maxarray=1000000;"
+                    + "Pair;CurrencyLedger;StateChunk;JoinReply;DeliveryAck;TxStatus;TxStatus$State;"
+                    + "Transaction;Transaction$Opcode;"
+                    + "java.lang.*;java.util.ArrayList;java.util.CollSer;java.util.ImmutableCollections$*;"
+                    + "java.util.Collections$*;java.util.Arrays$ArrayList;"
+                    + "java.io.IOException;java.io.UncheckedIOException;java.io.EOFException;"
+                    + "java.rmi.RemoteException;java.rmi.ConnectException;java.rmi.ServerException;"
+                    + "java.rmi.NoSuchObjectException;java.rmi.NotBoundException;"
+                    + "!*");
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INT = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte STRING = 5;
+    private static final byte TRANSACTIONS = 6;
+    private static final byte DELIVERY_ACK = 7;
+    private static final byte STRINGS = 8;
+    private static final byte SERIALIZED = 9;
+
+    private FrameCodec() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void write(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        } else if (value instanceof Integer i) {
+            out.writeByte(INT);
+            out.writeInt(i);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof Double d) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        } else if (value instanceof String s) {
+            out.writeByte(STRING);
+            out.writeUTF(s);
+        } else if (value instanceof DeliveryAck ack) {
+            out.writeByte(DELIVERY_ACK);
+            out.writeLong(ack.nextSequence());
+            out.writeLong(ack.appliedCounter());
+            out.writeLong(ack.digest());
+            out.writeLong(ack.durableSequence());
+        } else if (value instanceof List<?> list && isListOf(list, Transaction.class)) {
+            out.writeByte(TRANSACTIONS);
+            TransactionCodec.write(out, (List<Transaction>) list);
+        } else if (value instanceof List<?> list && isListOf(list, String.class)) {
+            out.writeByte(STRINGS);
+            out.writeInt(list.size());
+            for (Object s : list) {
+                out.writeUTF((String) s);
+            }
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(value);
+            }
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.size());
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    public static Object read(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case LONG:
+                return in.readLong();
+            case INT:
+                return in.readInt();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return in.readUTF();
+            case DELIVERY_ACK:
+                return new DeliveryAck(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+            case TRANSACTIONS:
+                return TransactionCodec.read(in);
+            case STRINGS: {
+                int size = checkedLength(in.readInt());
+                List<String> strings = new ArrayList<>(Math.min(size, 1024));
+                for (int i = 0; i < size; i++) {
+                    strings.add(in.readUTF());
+                }
+                return strings;
+            }
+            case SERIALIZED: {
+                byte[] bytes = new byte[checkedLength(in.readInt())];
+                in.readFully(bytes);
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    objects.setObjectInputFilter(SERIALIZED_FILTER);
+                    return objects.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown class in frame", e);
+                }
+            }
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    // A length read from a frame, it cannot be more than the frame holds
+    private static int checkedLength(int length) throws IOException {
+        if (length < 0 || length > NioTransport.MAX_FRAME_BYTES) {
+            throw new IOException("Invalid length " + length + " in frame");
+        }
+        return length;
+    }
+
+    // An empty list goes as an empty transaction list, the receiver only sees an empty List either way
+    private static boolean isListOf(List<?> list, Class<?> type) {
+        for (Object element : list) {
+            if (!type.isInstance(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
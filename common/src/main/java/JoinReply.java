@@ -0,0 +1,11 @@
+import java.io.Serializable;
+
+// Where a bank joining (or rejoining) a group starts. startSequence is the order counter ordered deltas are delivered
+// from. If the MDS cannot catch the bank up from its log, snapshotId names the state transfer the bank pulls first
+// (-1 if there is none). acknowledged is the MDS's cumulative ack for the bank's own transactions at that point
+public record JoinReply(long startSequence, long snapshotId, long acknowledged) implements Serializable {
+
+    public boolean hasSnapshot() {
+        return snapshotId >= 0;
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Fixed layout binary checkpoint of a ledger and its order counter, little endian:
+//
+//   header   magic, version, order counter, currency count, rolling operation digest,
+//            CRC32 of everything else in the file (the header fields before it and the body)
+//   names    count slots of NAME_SLOT_BYTES, a length byte followed by the UTF-8 currency code
+//   rates    count doubles
+//   balances count doubles
+//
+// Written in one go through a FileChannel and loaded by mapping the file, the arrays are bulk copied straight
+// out of the mapping, there is no object stream involved either way
+public final class LedgerCheckpoint {
+
+    private static final int MAGIC = 0x4C434B50; // "LCKP"
+    private static final int VERSION = 1;
+    private static final int CHECKSUM_OFFSET = 4 + 4 + 8 + 4 + 8;
+    private static final int HEADER_BYTES = CHECKSUM_OFFSET + 4;
+    private static final int NAME_SLOT_BYTES = 16;
+
+    private LedgerCheckpoint() {
+    }
+
+    // Writes the checkpoint to the channel from its current position, the caller decides when to force it
+    public static void write(FileChannel channel, CurrencyLedger ledger, long orderCounter) throws IOException {
+        int count = ledger.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * (NAME_SLOT_BYTES + 16))
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(orderCounter)
+                .putInt(count)
+                .putLong(ledger.operationDigest());
+
+        buffer.position(HEADER_BYTES);
+        for (int id = 0; id < count; id++) {
+            byte[] name = ledger.name(id).getBytes(StandardCharsets.UTF_8);
+            if (name.length >= NAME_SLOT_BYTES) {
+                throw new IllegalArgumentException("Currency code too long for a checkpoint: " + ledger.name(id));
+            }
+            int slot = buffer.position();
+            buffer.put((byte) name.length).put(name).position(slot + NAME_SLOT_BYTES);
+        }
+        for (int id = 0; id < count; id++) {
+            buffer.putDouble(ledger.rate(id));
+        }
+        for (int id = 0; id < count; id++) {
+            buffer.putDouble(ledger.balance(id));
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, CHECKSUM_OFFSET);
+        crc.update(buffer.array(), HEADER_BYTES, buffer.position() - HEADER_BYTES);
+        buffer.putInt(CHECKSUM_OFFSET, (int) crc.getValue());
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Maps the checkpoint file and restores the ledger and order counter from it
+    public static Pair load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.limit() < HEADER_BYTES || mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a ledger checkpoint: " + file);
+            }
+            int version = mapped.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " in " + file);
+            }
+            long orderCounter = mapped.getLong(8);
+            int count = mapped.getInt(16);
+            long operationDigest = mapped.getLong(20);
+            int checksum = mapped.getInt(CHECKSUM_OFFSET);
+
+            long bodyBytes = (long) count * (NAME_SLOT_BYTES + 16);
+            if (count < 0 || mapped.limit() < HEADER_BYTES + bodyBytes) {
+                throw new IOException("Truncated checkpoint: " + file);
+            }
+            // The header is checked along with the body, a flipped bit in the counter or digest is caught too
+            CRC32 crc = new CRC32();
+            crc.update(mapped.slice(0, CHECKSUM_OFFSET));
+            crc.update(mapped.slice(HEADER_BYTES, (int) bodyBytes));
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checkpoint checksum mismatch: " + file);
+            }
+
+            String[] names = new String[count];
+            byte[] name = new byte[NAME_SLOT_BYTES];
+            for (int id = 0; id < count; id++) {
+                int slot = HEADER_BYTES + id * NAME_SLOT_BYTES;
+                int length = mapped.get(slot);
+                mapped.get(slot + 1, name, 0, length);
+                names[id] = new String(name, 0, length, StandardCharsets.UTF_8);
+            }
+            double[] rates = new double[count];
+            double[] balances = new double[count];
+            int ratesOffset = HEADER_BYTES + count * NAME_SLOT_BYTES;
+            mapped.slice(ratesOffset, count * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(rates);
+            mapped.slice(ratesOffset + count * 8, count * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(balances);
+
+            return new Pair(new CurrencyLedger(names, rates, balances, operationDigest), orderCounter);
+        }
+    }
+}
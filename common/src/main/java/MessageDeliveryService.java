@@ -5,14 +5,25 @@ import java.util.List;
 // RMI methods for interacting with the MDS
 public interface MessageDeliveryService extends Remote {
 
-    // Banks join a group with this method, returns a snapshot if it exists
-    Pair joinGroup(String groupName, String bankServer, int numberOfReplicas) throws RemoteException;
+    // Banks join a group with this method, and join it again after they were evicted. orderCounter is where the
+    // banks own state is, the first bank of a group seeds the MDS's shadow state with it (pulled with
+    // BankService.getStateChunk). Returns where the bank starts and the snapshot it has to pull first, if any
+    JoinReply joinGroup(String groupName, String bankServer, long orderCounter) throws RemoteException;
+
+    // A chunk of the snapshot a joining bank was told to pull, starting at currency firstId.
+    // null if the snapshot has expired, the bank joins again
+    StateChunk fetchSnapshotChunk(String groupName, long snapshotId, int firstId) throws RemoteException;
 
     // Bank can leave a group
     void leaveGroup(String groupName, String bankServer) throws RemoteException;
 
-    // Banks can send transaction with this method
-    void sendTransactions(String groupName, List<Transaction> transactions) throws RemoteException;
+    // Banks can send transaction with this method, all from the calling bank and in counter order
+    // Returns the cumulative ack for the bank, the highest counter of its transactions that has been ordered
+    long sendTransactions(String groupName, List<Transaction> transactions) throws RemoteException;
+
+    // The group's committed sequence, how many transactions it has ordered so far. A bank that has applied up to it
+    // has seen every transaction ordered before the call, consistent reads wait for that instead of being ordered
+    long getCommittedSequence(String groupName) throws RemoteException;
 
     // can be used for getting the number of members of a group
     int getNumberOfMembers(String groupName) throws RemoteException;
@@ -20,6 +31,8 @@ public interface MessageDeliveryService extends Remote {
     // Get the names of members of a group
     List<String> getMemberNames(String groupName) throws RemoteException;
 
-    // A call to synchronize with a batch of joining banks
-    void awaitExecution() throws RemoteException;
+    // Waits until numberOfReplicas banks have joined the group, returns right away for banks that join later.
+    // Returns false if the group has not filled up within a few seconds, the bank asks again. No call blocks
+    // for longer than a transport waits for its response
+    boolean awaitExecution(String groupName, int numberOfReplicas) throws RemoteException;
 }
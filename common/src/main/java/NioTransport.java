@@ -0,0 +1,581 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Calls over persistent, non-blocking SocketChannels, all driven by one selector thread per transport.
+// A frame is [int length][int request id][byte kind][body]. A request body is the service id (hash of the bound
+// name and interface), the index of the method in the interface (methods sorted by signature, the same table on
+// both ends) and the arguments in FrameCodec form. A response body is the return value or the exception thrown.
+// Every call gets its own request id, so any number of calls can be in flight on one connection and responses
+// come back in whatever order they finish (pipelining). Calls to one host share a connection, it is opened on
+// first use and again after it breaks, a broken connection fails its calls with a RemoteException.
+// Requests run on a dispatcher pool like RMI's, service methods may block (awaitExecution waits for the group to fill).
+// A call that gets no response within transport.callTimeoutMs fails with a RemoteException, a peer that dies or
+// hangs mid-call does not hold the caller forever
+public class NioTransport implements Transport, Closeable {
+
+    private static final byte REQUEST = 0;
+    private static final byte RESPONSE = 1;
+    private static final byte FAILURE = 2;
+
+    private static final String DIRECTORY_NAME = "transport-directory";
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_GATHERED_FRAMES = 64;
+
+    // Largest frame either side sends or accepts. The length comes from the peer, anything outside
+    // [FRAME_HEADER_BYTES, MAX_FRAME_BYTES] closes the connection before a buffer is allocated for it
+    static final int MAX_FRAME_BYTES = Integer.getInteger("transport.maxFrameBytes", 16 * 1024 * 1024);
+    private static final int FRAME_HEADER_BYTES = 5; // request id and kind
+
+    // Longest a caller waits for a response. Longer than any call is meant to block (awaitExecution returns well
+    // within it), callers with a tighter deadline interrupt the call themselves
+    private static final long CALL_TIMEOUT_MS = Long.getLong("transport.callTimeoutMs", 30_000);
+
+    // A service as seen through one of its Remote interfaces
+    private record Exported(String key, Object service, Method[] methods) {}
+
+    private interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final String advertisedHost;
+    private final int port;
+
+    private final Map<Integer, Exported> exported = new ConcurrentHashMap<>();
+    private final Map<InetSocketAddress, Connection> connections = new ConcurrentHashMap<>();
+    // A lock and not synchronized, a virtual thread blocked on connect must not pin its carrier
+    private final ReentrantLock connectLock = new ReentrantLock();
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private final ExecutorService dispatcher;
+    private final TransportDirectory directory;
+    private volatile boolean closed;
+
+    // The process that serves the name directory, on the directory's port of its advertised host
+    public static NioTransport directoryHost(int directoryPort, String advertisedHost) throws IOException {
+        return new NioTransport(new InetSocketAddress(advertisedHost, directoryPort), advertisedHost, null);
+    }
+
+    // A process that uses the directory at directoryAddress, listening on an ephemeral port for calls to it.
+    // Both only listen on the address they advertise (loopback by default), not on every interface
+    public static NioTransport client(String advertisedHost, InetSocketAddress directoryAddress) throws IOException {
+        return new NioTransport(new InetSocketAddress(advertisedHost, 0), advertisedHost, directoryAddress);
+    }
+
+    private NioTransport(InetSocketAddress listen, String advertisedHost, InetSocketAddress directoryAddress) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(listen);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.advertisedHost = advertisedHost;
+        this.port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+
+        AtomicInteger threads = new AtomicInteger();
+        this.dispatcher = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "nio-dispatch-" + port + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread loop = new Thread(this::run, "nio-transport-" + port);
+        loop.setDaemon(true);
+        loop.start();
+
+        if (directoryAddress == null) {
+            LocalDirectory local = new LocalDirectory();
+            register(DIRECTORY_NAME, TransportDirectory.class, local);
+            this.directory = local;
+        } else {
+            this.directory = proxy(directoryAddress, DIRECTORY_NAME, TransportDirectory.class);
+        }
+    }
+
+    @Override
+    public <T extends Remote> void export(String name, Class<T> type, T service) throws IOException {
+        // Reachable through every Remote interface it implements, not only the one it is exported as
+        register(name, type, service);
+        for (Class<?> iface : service.getClass().getInterfaces()) {
+            if (Remote.class.isAssignableFrom(iface) && iface != type) {
+                register(name, iface, service);
+            }
+        }
+        directory.bind(name, advertisedHost, port);
+    }
+
+    @Override
+    public <T extends Remote> T lookup(String name, Class<T> type) throws IOException, NotBoundException {
+        String endpoint = directory.resolve(name);
+        if (endpoint == null) {
+            throw new NotBoundException(name);
+        }
+        return proxy(Transport.address(endpoint), name, type);
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        server.close();
+        for (Connection connection : connections.values()) {
+            connection.close(new IOException("Transport closed"));
+        }
+        dispatcher.shutdownNow();
+    }
+
+    private void register(String name, Class<?> type, Object service) {
+        String key = name + "/" + type.getName();
+        Exported previous = exported.put(key.hashCode(), new Exported(key, service, methodTable(type)));
+        if (previous != null && !previous.key().equals(key)) {
+            throw new IllegalStateException("Service id of " + key + " collides with " + previous.key());
+        }
+    }
+
+    // The methods of an interface in an order both ends agree on
+    private static Method[] methodTable(Class<?> type) {
+        Method[] methods = type.getMethods();
+        Arrays.sort(methods, Comparator.comparing(method -> method.getName() + Arrays.toString(method.getParameterTypes())));
+        return methods;
+    }
+
+    // A client side handle, every call on it is a request to address
+    private <T> T proxy(InetSocketAddress address, String name, Class<T> type) {
+        int serviceId = (name + "/" + type.getName()).hashCode();
+        Method[] methods = methodTable(type);
+        Map<Method, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < methods.length; i++) {
+            indexes.put(methods[i], i);
+        }
+        String description = "NioTransport[" + name + "@" + address + "]";
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> self == args[0];
+                    case "hashCode" -> System.identityHashCode(self);
+                    default -> description;
+                };
+            }
+            return call(address, description, serviceId, indexes.get(method), method, args);
+        });
+        return type.cast(proxy);
+    }
+
+    private Object call(InetSocketAddress address, String description, int serviceId, int methodIndex, Method method,
+                        Object[] args) throws Throwable {
+        byte[] response;
+        Connection connection = null;
+        int id = 0;
+        try {
+            connection = connect(address);
+            CompletableFuture<byte[]> pending = new CompletableFuture<>();
+            id = connection.register(pending);
+            connection.send(frame(id, REQUEST, out -> {
+                out.writeInt(serviceId);
+                out.writeByte(methodIndex);
+                out.writeByte(args == null ? 0 : args.length);
+                if (args != null) {
+                    for (Object arg : args) {
+                        FrameCodec.write(out, arg);
+                    }
+                }
+            }));
+            response = pending.get(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // A late response is dropped
+            connection.abandon(id);
+            throw new RemoteException("No response from " + description + " within " + CALL_TIMEOUT_MS + " ms");
+        } catch (ExecutionException e) {
+            throw new RemoteException("Call to " + description + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            // Cancelled by the caller (a missed deadline), a late response is dropped
+            connection.abandon(id);
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted calling " + description, e);
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.abandon(id);
+            }
+            throw new RemoteException("Call to " + description + " failed", e);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(response, 5, response.length - 5));
+        Object value = FrameCodec.read(in);
+        if (response[4] == RESPONSE) {
+            return value;
+        }
+        Throwable thrown = (Throwable) value;
+        if (thrown instanceof RuntimeException || thrown instanceof Error) {
+            throw thrown;
+        }
+        for (Class<?> declared : method.getExceptionTypes()) {
+            if (declared.isInstance(thrown)) {
+                throw thrown;
+            }
+        }
+        throw new RemoteException("Call to " + description + " failed", thrown);
+    }
+
+    // Runs a request on a dispatcher thread and sends back what the service returned or threw
+    private void serve(Connection connection, byte[] request) {
+        int id;
+        Object result;
+        boolean failed;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(request, 5, request.length - 5));
+            id = ((request[0] & 0xFF) << 24) | ((request[1] & 0xFF) << 16) | ((request[2] & 0xFF) << 8) | (request[3] & 0xFF);
+            Exported target = exported.get(in.readInt());
+            int methodIndex = in.readUnsignedByte();
+            Object[] args = new Object[in.readUnsignedByte()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = FrameCodec.read(in);
+            }
+            try {
+                if (target == null) {
+                    throw new NoSuchObjectException("No such service on port " + port);
+                }
+                // The index comes from the peer, a table that does not match ours must not take the dispatcher down
+                if (methodIndex < 0 || methodIndex >= target.methods().length) {
+                    throw new NoSuchObjectException("No method " + methodIndex + " on " + target.key());
+                }
+                result = target.methods()[methodIndex].invoke(target.service(), args);
+                failed = false;
+            } catch (InvocationTargetException e) {
+                result = e.getCause();
+                failed = true;
+            } catch (NoSuchObjectException | IllegalAccessException | IllegalArgumentException e) {
+                result = e;
+                failed = true;
+            }
+        } catch (IOException e) {
+            connection.close(e);
+            return;
+        }
+
+        try {
+            Object value = result;
+            byte kind = failed ? FAILURE : RESPONSE;
+            ByteBuffer response;
+            try {
+                response = frame(id, kind, out -> FrameCodec.write(out, value));
+            } catch (IOException e) {
+                // The result did not encode (an exception that does not serialize), send why instead
+                response = frame(id, FAILURE, out -> FrameCodec.write(out, new RemoteException(String.valueOf(value))));
+            }
+            connection.send(response);
+        } catch (IOException e) {
+            // The caller is gone, nobody is waiting for this response
+        }
+    }
+
+    private static ByteBuffer frame(int id, byte kind, BodyWriter body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // length, patched below
+        out.writeInt(id);
+        out.writeByte(kind);
+        body.write(out);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        int length = buffer.capacity() - 4;
+        if (length > MAX_FRAME_BYTES) {
+            throw new IOException("Frame of " + length + " bytes is larger than " + MAX_FRAME_BYTES);
+        }
+        buffer.putInt(0, length);
+        return buffer;
+    }
+
+    // The connection to address, opened if there is none or the last one broke
+    private Connection connect(InetSocketAddress address) throws IOException {
+        Connection connection = connections.get(address);
+        if (connection != null && !connection.closed) {
+            return connection;
+        }
+        connectLock.lock();
+        try {
+            connection = connections.get(address);
+            if (connection != null && !connection.closed) {
+                return connection;
+            }
+            SocketChannel channel = SocketChannel.open(address);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+            Connection opened = new Connection(channel, address);
+            // Tasks run in order, so the channel is registered before anything is written to it
+            onSelector(() -> opened.key = channel.register(selector, SelectionKey.OP_READ, opened), opened);
+            connections.put(address, opened);
+            return opened;
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    private interface SelectorTask {
+        void run() throws IOException;
+    }
+
+    private void onSelector(SelectorTask task, Connection connection) {
+        selectorTasks.add(() -> {
+            try {
+                task.run();
+            } catch (IOException | CancelledKeyException e) {
+                connection.close(e);
+            }
+        });
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                selector.select();
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.attachment() instanceof Connection connection) {
+                        try {
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        } catch (IOException | CancelledKeyException e) {
+                            connection.close(e);
+                        }
+                    } else if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    System.out.println("[TRANSPORT] Selector failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+        Connection connection = new Connection(channel, null);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    // One socket, either opened by this side (address is set) or accepted from a caller
+    private final class Connection {
+        private final SocketChannel channel;
+        private final InetSocketAddress address;
+        private SelectionKey key; // only touched by the selector thread
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_FRAMES];
+
+        private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final Map<Integer, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+        private volatile boolean closed;
+
+        Connection(SocketChannel channel, InetSocketAddress address) {
+            this.channel = channel;
+            this.address = address;
+        }
+
+        // Gives the call a request id, its response completes the future
+        int register(CompletableFuture<byte[]> response) {
+            int id = nextId.incrementAndGet();
+            pending.put(id, response);
+            if (closed && pending.remove(id) != null) {
+                response.completeExceptionally(new IOException("Connection to " + address + " closed"));
+            }
+            return id;
+        }
+
+        void abandon(int id) {
+            pending.remove(id);
+        }
+
+        // Queues a frame, the selector thread writes it. Frames queued while a flush is pending go with it
+        void send(ByteBuffer frame) throws IOException {
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+            writeQueue.add(frame);
+            if (flushScheduled.compareAndSet(false, true)) {
+                onSelector(this::flush, this);
+            }
+        }
+
+        // Writes queued frames until the queue is empty or the socket is full, gathering several per write
+        void flush() throws IOException {
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            do {
+                flushScheduled.set(false);
+                while (true) {
+                    int count = 0;
+                    for (ByteBuffer frame : writeQueue) {
+                        gathered[count++] = frame;
+                        if (count == gathered.length) {
+                            break;
+                        }
+                    }
+                    if (count == 0) {
+                        break;
+                    }
+                    channel.write(gathered, 0, count);
+                    for (int i = 0; i < count; i++) {
+                        if (gathered[i].hasRemaining()) {
+                            // Socket buffer is full, continue when it is writable again
+                            flushScheduled.set(true);
+                            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                            Arrays.fill(gathered, null);
+                            return;
+                        }
+                        writeQueue.poll();
+                    }
+                }
+                Arrays.fill(gathered, null);
+                key.interestOps(SelectionKey.OP_READ);
+                // A frame queued after the queue looked empty but before the flag was cleared would wait
+            } while (!writeQueue.isEmpty() && flushScheduled.compareAndSet(false, true));
+        }
+
+        // Reads what has arrived and handles every complete frame in it
+        void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                throw new EOFException("Connection closed by peer");
+            }
+            readBuffer.flip();
+            while (readBuffer.remaining() >= 4) {
+                int length = readBuffer.getInt(readBuffer.position());
+                if (length < FRAME_HEADER_BYTES || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                if (readBuffer.remaining() < 4 + length) {
+                    if (4 + length > readBuffer.capacity()) {
+                        // Frame larger than the buffer, grow it to fit
+                        ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                        larger.put(readBuffer);
+                        readBuffer = larger;
+                        return;
+                    }
+                    break;
+                }
+                readBuffer.getInt();
+                byte[] frame = new byte[length];
+                readBuffer.get(frame);
+                received(frame);
+            }
+            readBuffer.compact();
+            // Once a frame that needed a larger buffer has been handled, go back to the usual size, unless the next
+            // frame is just as large
+            if (readBuffer.capacity() > READ_BUFFER_BYTES && readBuffer.position() <= READ_BUFFER_BYTES
+                    && (readBuffer.position() < 4 || 4 + readBuffer.getInt(0) <= READ_BUFFER_BYTES)) {
+                readBuffer.flip();
+                readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES).put(readBuffer);
+            }
+        }
+
+        private void received(byte[] frame) {
+            if (frame[4] == REQUEST) {
+                dispatcher.execute(() -> serve(this, frame));
+                return;
+            }
+            int id = ((frame[0] & 0xFF) << 24) | ((frame[1] & 0xFF) << 16) | ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+            CompletableFuture<byte[]> response = pending.remove(id);
+            if (response != null) {
+                response.complete(frame);
+            }
+        }
+
+        // Fails every call still waiting on this connection, the next call to the host opens a new one
+        void close(Throwable cause) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+            if (address != null) {
+                connections.remove(address, this);
+            }
+            IOException failure = new IOException("Connection to " + (address != null ? address : "caller") + " closed", cause);
+            for (Integer id : pending.keySet()) {
+                CompletableFuture<byte[]> response = pending.remove(id);
+                if (response != null) {
+                    response.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    // The name directory, kept by the process that hosts it
+    private static final class LocalDirectory implements TransportDirectory {
+        private final Map<String, String> endpoints = new ConcurrentHashMap<>();
+
+        @Override
+        public void bind(String name, String host, int port) {
+            endpoints.put(name, host + ":" + port);
+        }
+
+        @Override
+        public String resolve(String name) {
+            return endpoints.get(name);
+        }
+    }
+}
@@ -1,29 +1,38 @@
-
 import java.io.Serializable;
-import java.util.Map;
 
 // A seralizable Pair class
-// Contains a snapshot of the currencies and an order counter
+// Contains a snapshot of the account's ledger and an order counter
 // Can be used to synchronize views with new joining banks
 public class Pair implements Serializable{
-    private final Map<String, CurrencyInfo> currencies;
-    private final Integer orderCounter;
 
-    public Pair(Map<String, CurrencyInfo> currencies, Integer orderCounter){
-        this.currencies = currencies;
+    private static final long serialVersionUID = 1L;
+    private final CurrencyLedger ledger;
+    private final long orderCounter;
+
+    public Pair(CurrencyLedger ledger, long orderCounter){
+        this.ledger = ledger;
         this.orderCounter = orderCounter;
     }
 
-    public Map<String, CurrencyInfo> getCurrencies(){
-        return currencies;
+    public CurrencyLedger getLedger(){
+        return ledger;
     }
 
-    public Integer getOrderCounter(){
+    public long getOrderCounter(){
         return orderCounter;
     }
 
+    // Two snapshots are the same state if they are at the same order counter with the same ledger digest
     @Override
     public boolean equals(Object o) {
-        return orderCounter.equals(((Pair)o).orderCounter);
+        if(!(o instanceof Pair other)){
+            return false;
+        }
+        return orderCounter == other.orderCounter && ledger.digest() == other.ledger.digest();
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(ledger.digest()) * 31 + Long.hashCode(orderCounter);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+import java.io.IOException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+// Java RMI through an rmiregistry, the way banks and the MDS have always talked
+public class RmiTransport implements Transport {
+
+    private final Registry registry;
+
+    public RmiTransport(String registryHost, int registryPort) throws RemoteException {
+        this.registry = LocateRegistry.getRegistry(registryHost, registryPort);
+    }
+
+    @Override
+    public <T extends Remote> void export(String name, Class<T> type, T service) throws IOException {
+        // UnicastRemoteObjects export themselves when created, anything else is exported here
+        Remote exported = service instanceof UnicastRemoteObject ? service : UnicastRemoteObject.exportObject(service, 0);
+        registry.rebind(name, exported);
+    }
+
+    @Override
+    public <T extends Remote> T lookup(String name, Class<T> type) throws IOException, NotBoundException {
+        return type.cast(registry.lookup(name));
+    }
+}
@@ -0,0 +1,76 @@
+import java.io.Serializable;
+import java.rmi.RemoteException;
+
+// One bounded piece of a ledger in a state transfer: the currencies firstId up to firstId + names.length.
+// Every chunk also carries what the whole transfer is about (order counter, number of currencies and digest),
+// so the receiver can check that it put together the state it was offered. Joining banks pull the MDS's snapshot
+// this way and the MDS pulls the first bank's initial state, no ledger ever goes out in one message
+public record StateChunk(long orderCounter, int firstId, int currencies, String[] names, double[] rates,
+                         double[] balances, long operationDigest, long digest)
+        implements Serializable {
+
+    // Currencies per chunk, around 100 KB on the wire with short currency codes
+    public static final int MAX_CURRENCIES = 4096;
+
+    // Where chunks are pulled from, null if the transfer is no longer available
+    public interface Source {
+        StateChunk chunk(int firstId) throws RemoteException;
+    }
+
+    // The chunk of ledger starting at firstId, ledger must not change while it is cut
+    public static StateChunk of(CurrencyLedger ledger, long orderCounter, int firstId) {
+        int end = Math.min(ledger.size(), firstId + MAX_CURRENCIES);
+        int count = Math.max(0, end - firstId);
+        String[] names = new String[count];
+        double[] rates = new double[count];
+        double[] balances = new double[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = ledger.name(firstId + i);
+            rates[i] = ledger.rate(firstId + i);
+            balances[i] = ledger.balance(firstId + i);
+        }
+        return new StateChunk(orderCounter, firstId, ledger.size(), names, rates, balances,
+                ledger.operationDigest(), ledger.digest());
+    }
+
+    // Pulls a whole ledger from source, one chunk at a time, and checks it against the digest it was offered with
+    public static Pair assemble(Source source) throws RemoteException {
+        StateChunk first = source.chunk(0);
+        if (first == null) {
+            throw new RemoteException("State transfer is no longer available");
+        }
+        String[] names = new String[first.currencies()];
+        double[] rates = new double[first.currencies()];
+        double[] balances = new double[first.currencies()];
+
+        StateChunk chunk = first;
+        int next = 0;
+        while (next < first.currencies()) {
+            if (chunk == null) {
+                throw new RemoteException("State transfer is no longer available");
+            }
+            if (chunk.firstId() != next || chunk.names().length == 0 || next + chunk.names().length > names.length
+                    || chunk.orderCounter() != first.orderCounter() || chunk.digest() != first.digest()) {
+                throw new RemoteException("State transfer at order counter " + first.orderCounter() + " changed on the way");
+            }
+            System.arraycopy(chunk.names(), 0, names, next, chunk.names().length);
+            System.arraycopy(chunk.rates(), 0, rates, next, chunk.names().length);
+            System.arraycopy(chunk.balances(), 0, balances, next, chunk.names().length);
+            next += chunk.names().length;
+            if (next < first.currencies()) {
+                chunk = source.chunk(next);
+            }
+        }
+
+        CurrencyLedger ledger = new CurrencyLedger(names, rates, balances, first.operationDigest());
+        if (ledger.digest() != first.digest()) {
+            throw new RemoteException("State transfer at order counter " + first.orderCounter() + " does not match its digest");
+        }
+        return new Pair(ledger, first.orderCounter());
+    }
+
+    // Whether this is the last chunk of the transfer
+    public boolean isLast() {
+        return firstId + names.length >= currencies;
+    }
+}
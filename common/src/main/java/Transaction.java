@@ -1,19 +1,288 @@
 import java.io.Serializable;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
-// A seralizable record class for a transaction
-// A transaction has a command that must be pares, along with its unique ID
-public record Transaction(String command, String uniqueId) implements Serializable {
+// A seralizable transaction, kept in typed form instead of the raw command line.
+// The command is parsed once when the transaction is created, replicas read the opcode, currency and amount
+// directly. The text the user typed is kept as well when it differs from the canonical rendering, so history shows
+// what was entered. The unique ID is the origin bank and its local sequence, "bankName:sequence" when rendered,
+// inside a JVM the origin is also numbered so hot paths can key on an int. On the wire lists of transactions go
+// as a TransactionBatch
+public final class Transaction implements Serializable {
 
-    public Transaction{
-        if(command == null || uniqueId == null){
+    private static final long serialVersionUID = 1L;
+
+    public enum Opcode {
+        DEPOSIT,
+        ADD_INTEREST,       // currency is null for interest on all currencies
+        RAW                 // anything else, kept as the original command text
+    }
+
+    private final Opcode opcode;
+    private final String currency;
+    private final double amount;
+    private final String text; // always for RAW, for typed ones only if it differs from the canonical command
+    private final String origin;
+    private final long sequence;
+    private final transient int originId;
+
+    // Rendered on first use, so asking again does not allocate
+    private transient String command;
+    private transient String uniqueId;
+
+    // Process wide numbers for origin bank names. Only meaningful inside this JVM, the wire and the digests
+    // carry the name
+    private static final ConcurrentHashMap<String, Integer> ORIGIN_IDS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_ORIGIN_ID = new AtomicInteger();
+
+    // Parses a command line and a "bankName:sequence" unique ID
+    public Transaction(String command, String uniqueId) {
+        this(parseOrNull(command), command, originOf(uniqueId), sequenceOf(uniqueId));
+    }
+
+    // Parses a command line for the given origin bank and local sequence
+    public static Transaction of(String command, String origin, long sequence) {
+        return new Transaction(parseOrNull(command), command, origin, sequence);
+    }
+
+    // An already parsed transaction, currency is null where the command has none
+    public static Transaction of(Opcode opcode, String currency, double amount, String origin, long sequence) {
+        if(opcode == Opcode.RAW || origin == null){
+            throw new IllegalArgumentException("Typed transaction needs a typed opcode and an origin");
+        }
+        return new Transaction(opcode, currency, amount, null, origin, sequence);
+    }
+
+    // An already parsed transaction with the command line it was parsed from, the line is only kept if it is not
+    // the canonical form
+    public static Transaction of(Opcode opcode, String currency, double amount, String command, String origin,
+                                 long sequence) {
+        if(opcode == Opcode.RAW || origin == null){
+            throw new IllegalArgumentException("Typed transaction needs a typed opcode and an origin");
+        }
+        return new Transaction(opcode, currency, amount, typedText(command, opcode, currency, amount), origin, sequence);
+    }
+
+    private Transaction(Transaction parsed, String command, String origin, long sequence) {
+        if(command == null || origin == null){
             throw new IllegalArgumentException("Transaction command or unique id cannot be null");
         }
+        if(parsed != null){
+            this.opcode = parsed.opcode;
+            this.currency = parsed.currency;
+            this.amount = parsed.amount;
+            this.text = typedText(command, parsed.opcode, parsed.currency, parsed.amount);
+        }
+        else{
+            this.opcode = Opcode.RAW;
+            this.currency = null;
+            this.amount = 0;
+            this.text = command;
+        }
+        this.origin = origin;
+        this.sequence = sequence;
+        this.originId = originIdOf(origin);
+    }
+
+    // Used by the codec, the fields come straight off the wire
+    Transaction(Opcode opcode, String currency, double amount, String text, String origin, long sequence) {
+        this.opcode = opcode;
+        this.currency = currency;
+        this.amount = amount;
+        this.text = text;
+        this.origin = origin;
+        this.sequence = sequence;
+        this.originId = originIdOf(origin);
+    }
+
+    // The number of an origin bank name in this JVM, given out the first time the name is seen
+    public static int originIdOf(String origin) {
+        Integer id = ORIGIN_IDS.get(origin);
+        if(id != null){
+            return id;
+        }
+        return ORIGIN_IDS.computeIfAbsent(origin, name -> NEXT_ORIGIN_ID.getAndIncrement());
+    }
+
+    // The origin id is local to the JVM, so a transaction that arrives by Java serialization gets it again here
+    private Object readResolve() {
+        return new Transaction(opcode, currency, amount, text, origin, sequence);
     }
 
-    public String  getCommand() {
+    // The typed text to keep, null if it is just the canonical form
+    private static String typedText(String command, Opcode opcode, String currency, double amount) {
+        if(command == null || command.equals(render(opcode, currency, amount))){
+            return null;
+        }
         return command;
     }
+
+    // Typed form of the commands that get ordered, null if the command has to stay RAW.
+    // Follows CommandParser: extra arguments are ignored, anything that would fail on the replicas (bad number,
+    // missing argument) stays RAW so it fails there the same way
+    private static Transaction parseOrNull(String command) {
+        if(command == null){
+            return null;
+        }
+        String[] tokens = command.trim().split("\\s+");
+        try {
+            switch (tokens[0].toLowerCase()) {
+                case "deposit":
+                    if(tokens.length >= 3){
+                        return typed(Opcode.DEPOSIT, tokens[1], Double.parseDouble(tokens[2]));
+                    }
+                    break;
+                case "addinterest":
+                    if(tokens.length == 2){
+                        return typed(Opcode.ADD_INTEREST, null, Double.parseDouble(tokens[1]));
+                    }
+                    if(tokens.length >= 3){
+                        return typed(Opcode.ADD_INTEREST, tokens[1], Double.parseDouble(tokens[2]));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // Stays RAW
+        }
+        return null;
+    }
+
+    // 64 bit hash of every field, the same in every JVM (String.hashCode is specified), for state digests
+    public long fingerprint() {
+        long h = opcode.ordinal();
+        h = h * 1_000_003 + Objects.hashCode(currency);
+        h = h * 1_000_003 + Double.doubleToRawLongBits(amount);
+        h = h * 1_000_003 + Objects.hashCode(text);
+        h = h * 1_000_003 + origin.hashCode();
+        return h * 1_000_003 + sequence;
+    }
+
+    private static Transaction typed(Opcode opcode, String currency, double amount) {
+        return new Transaction(opcode, currency, amount, null, "", 0);
+    }
+
+    private static String originOf(String uniqueId) {
+        if(uniqueId == null){
+            return null;
+        }
+        return uniqueId.substring(0, uniqueId.lastIndexOf(':'));
+    }
+
+    private static long sequenceOf(String uniqueId) {
+        if(uniqueId == null){
+            return 0;
+        }
+        return Long.parseLong(uniqueId.substring(uniqueId.lastIndexOf(':') + 1));
+    }
+
+    public Opcode opcode() {
+        return opcode;
+    }
+
+    public String currency() {
+        return currency;
+    }
+
+    public double amount() {
+        return amount;
+    }
+
+    // Original command text, always set for RAW transactions and for typed ones entered in a non canonical form
+    public String text() {
+        return text;
+    }
+
+    public String origin() {
+        return origin;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public int originId() {
+        return originId;
+    }
+
+    // The command line as it was entered, or the canonical form ("deposit USD 100", "addInterest EUR 2.5") for
+    // typed transactions that were entered that way or built without text
+    public String command() {
+        String rendered = command;
+        if(rendered == null){
+            rendered = text != null ? text : render(opcode, currency, amount);
+            command = rendered;
+        }
+        return rendered;
+    }
+
+    // "bankName:sequence"
+    public String uniqueId() {
+        String rendered = uniqueId;
+        if(rendered == null){
+            rendered = origin + ":" + sequence;
+            uniqueId = rendered;
+        }
+        return rendered;
+    }
+
+    private static String render(Opcode opcode, String currency, double amount) {
+        switch (opcode) {
+            case DEPOSIT:
+                return "deposit " + currency + " " + formatAmount(amount);
+            case ADD_INTEREST:
+                return currency == null ? "addInterest " + formatAmount(amount)
+                        : "addInterest " + currency + " " + formatAmount(amount);
+            default:
+                return null;
+        }
+    }
+
+    public String getCommand() {
+        return command();
+    }
+
     public String getUniqueId() {
-        return uniqueId;
+        return uniqueId();
+    }
+
+    // Whole amounts without a trailing ".0", everything else (and -0.0) as Double.toString which parses back exactly
+    private static String formatAmount(double amount) {
+        if(amount == Math.rint(amount) && Math.abs(amount) < 1e15 && !isNegativeZero(amount)){
+            return Long.toString((long) amount);
+        }
+        return Double.toString(amount);
+    }
+
+    static boolean isNegativeZero(double amount) {
+        return Double.doubleToRawLongBits(amount) == Double.doubleToRawLongBits(-0.0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(!(o instanceof Transaction other)){
+            return false;
+        }
+        return sequence == other.sequence
+                && originId == other.originId
+                && Double.compare(amount, other.amount) == 0
+                && opcode == other.opcode
+                && Objects.equals(currency, other.currency)
+                && Objects.equals(text, other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(opcode, currency, amount, text, origin, sequence);
+    }
+
+    @Override
+    public String toString() {
+        return "Transaction[command=" + command() + ", uniqueId=" + uniqueId() + "]";
     }
 }
@@ -0,0 +1,47 @@
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+// A list of transactions that serializes through TransactionCodec instead of default Java serialization.
+// Wrap a list in this before handing it to an RMI call, the receiver just sees a List<Transaction>
+public class TransactionBatch extends AbstractList<Transaction> implements RandomAccess, Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Written by writeExternal through the codec, never by default serialization
+    @SuppressWarnings("serial")
+    private List<Transaction> transactions;
+
+    // Needed by Externalizable
+    public TransactionBatch() {
+        this.transactions = List.of();
+    }
+
+    public TransactionBatch(List<Transaction> transactions) {
+        this.transactions = transactions;
+    }
+
+    @Override
+    public Transaction get(int index) {
+        return transactions.get(index);
+    }
+
+    @Override
+    public int size() {
+        return transactions.size();
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        TransactionCodec.write(out, transactions);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        transactions = TransactionCodec.read(in);
+    }
+}
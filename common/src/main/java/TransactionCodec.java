@@ -0,0 +1,144 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hand written binary encoding for a list of transactions.
+// Every entry is a header byte (opcode and flags), the origin, the sequence as a varint, the operands and the
+// command text if the transaction carries one (RAW, or typed but not entered in canonical form).
+// Strings (origins, currencies, RAW text) go through a table built while encoding, the first occurrence is
+// written out and every later one is just its index, so a batch from one bank pays for its name once
+public final class TransactionCodec {
+
+    private static final Transaction.Opcode[] OPCODES = Transaction.Opcode.values();
+
+    private static final int OPCODE_MASK = 0x0F;
+    private static final int HAS_CURRENCY = 0x10;
+    private static final int WHOLE_AMOUNT = 0x20; // amount fits a varint, no need for all 8 bytes of the double
+    private static final int HAS_TEXT = 0x40;
+
+    private TransactionCodec() {
+    }
+
+    public static void write(DataOutput out, List<Transaction> transactions) throws IOException {
+        Map<String, Integer> table = new HashMap<>();
+        writeVarLong(out, transactions.size());
+        for (Transaction tx : transactions) {
+            Transaction.Opcode opcode = tx.opcode();
+            boolean hasAmount = opcode == Transaction.Opcode.DEPOSIT || opcode == Transaction.Opcode.ADD_INTEREST;
+            // -0.0 == 0 as well, it has to keep its sign so it goes as a double
+            boolean wholeAmount = hasAmount && tx.amount() == (long) tx.amount()
+                    && !Transaction.isNegativeZero(tx.amount());
+
+            int header = opcode.ordinal();
+            if (tx.currency() != null) {
+                header |= HAS_CURRENCY;
+            }
+            if (wholeAmount) {
+                header |= WHOLE_AMOUNT;
+            }
+            if (tx.text() != null) {
+                header |= HAS_TEXT;
+            }
+            out.writeByte(header);
+            writeString(out, table, tx.origin());
+            writeVarLong(out, tx.sequence());
+
+            if (tx.currency() != null) {
+                writeString(out, table, tx.currency());
+            }
+            if (wholeAmount) {
+                long whole = (long) tx.amount();
+                writeVarLong(out, (whole << 1) ^ (whole >> 63)); // zigzag, small negatives stay small
+            } else if (hasAmount) {
+                out.writeDouble(tx.amount());
+            }
+            if (tx.text() != null) {
+                writeString(out, table, tx.text());
+            }
+        }
+    }
+
+    public static List<Transaction> read(DataInput in) throws IOException {
+        List<String> table = new ArrayList<>();
+        long count = readVarLong(in);
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Invalid transaction count " + count);
+        }
+        // The count is not trusted with an allocation, the list grows as entries actually arrive
+        List<Transaction> transactions = new ArrayList<>((int) Math.min(count, 1024));
+        for (long i = 0; i < count; i++) {
+            int header = in.readUnsignedByte();
+            if ((header & OPCODE_MASK) >= OPCODES.length) {
+                throw new IOException("Unknown opcode " + (header & OPCODE_MASK));
+            }
+            Transaction.Opcode opcode = OPCODES[header & OPCODE_MASK];
+            String origin = readString(in, table);
+            long sequence = readVarLong(in);
+
+            String currency = (header & HAS_CURRENCY) != 0 ? readString(in, table) : null;
+            double amount = 0;
+            if ((header & WHOLE_AMOUNT) != 0) {
+                long zigzag = readVarLong(in);
+                amount = (zigzag >>> 1) ^ -(zigzag & 1);
+            } else if (opcode == Transaction.Opcode.DEPOSIT || opcode == Transaction.Opcode.ADD_INTEREST) {
+                amount = in.readDouble();
+            }
+            String text = (header & HAS_TEXT) != 0 ? readString(in, table) : null;
+            if (opcode == Transaction.Opcode.RAW && text == null) {
+                throw new IOException("RAW transaction without text");
+            }
+
+            transactions.add(new Transaction(opcode, currency, amount, text, origin, sequence));
+        }
+        return transactions;
+    }
+
+    private static void writeString(DataOutput out, Map<String, Integer> table, String value) throws IOException {
+        Integer index = table.get(value);
+        if (index != null) {
+            writeVarLong(out, index);
+            return;
+        }
+        writeVarLong(out, table.size());
+        table.put(value, table.size());
+        out.writeUTF(value);
+    }
+
+    private static String readString(DataInput in, List<String> table) throws IOException {
+        long index = readVarLong(in);
+        if (index >= 0 && index < table.size()) {
+            return table.get((int) index);
+        }
+        if (index != table.size()) {
+            throw new IOException("String table index " + index + " out of order");
+        }
+        String value = in.readUTF();
+        table.add(value);
+        return value;
+    }
+
+    // Unsigned LEB128, 7 bits per byte
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,51 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+
+// How banks and the MDS reach each other. Services are exported under a name and looked up by name, what lookup
+// hands out implements the same Remote interface with either transport, so the callers never know which one
+// carries their calls.
+// Chosen with -Dtransport=rmi|nio, RMI by default (the run scripts pass JAVA_OPTS through):
+//   rmi  RmiTransport, Java RMI through the rmiregistry on localhost:1099
+//   nio  NioTransport, binary frames over persistent SocketChannels. The MDS hosts the name directory on
+//        -Dtransport.directory=<host:port> (localhost:1100), no rmiregistry is needed. Every process has to
+//        use the same transport
+public interface Transport {
+
+    String DEFAULT_KIND = System.getProperty("transport", "rmi");
+    String DEFAULT_DIRECTORY = System.getProperty("transport.directory", "localhost:1100");
+    String DEFAULT_HOST = System.getProperty("transport.host", "localhost");
+
+    String REGISTRY_IP = "localhost";
+    int REGISTRY_PORT = 1099;
+
+    // Makes service reachable under name
+    <T extends Remote> void export(String name, Class<T> type, T service) throws IOException;
+
+    // A handle on the service exported under name
+    <T extends Remote> T lookup(String name, Class<T> type) throws IOException, NotBoundException;
+
+    // The transport selected by the system properties. The directory host (the MDS) serves the NIO name directory
+    static Transport fromSystemProperties(boolean directoryHost) throws IOException {
+        switch (DEFAULT_KIND.toLowerCase()) {
+            case "rmi":
+                return new RmiTransport(REGISTRY_IP, REGISTRY_PORT);
+            case "nio": {
+                InetSocketAddress directory = address(DEFAULT_DIRECTORY);
+                if (directoryHost) {
+                    return NioTransport.directoryHost(directory.getPort(), DEFAULT_HOST);
+                }
+                return NioTransport.client(DEFAULT_HOST, directory);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + DEFAULT_KIND);
+        }
+    }
+
+    // "host:port"
+    static InetSocketAddress address(String hostAndPort) {
+        int separator = hostAndPort.lastIndexOf(':');
+        return new InetSocketAddress(hostAndPort.substring(0, separator), Integer.parseInt(hostAndPort.substring(separator + 1)));
+    }
+}
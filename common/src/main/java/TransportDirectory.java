@@ -0,0 +1,12 @@
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Name directory of the NIO transport, the part of the rmiregistry it needs. Hosted by the MDS process
+public interface TransportDirectory extends Remote {
+
+    // Records that the service name is served on host:port
+    void bind(String name, String host, int port) throws RemoteException;
+
+    // "host:port" of the service name, null if nothing is bound under it
+    String resolve(String name) throws RemoteException;
+}
@@ -0,0 +1,14 @@
+import java.io.Serializable;
+
+// Where a transaction is in its life on one bank, as answered by TxStatusService.
+// sequence is the global order number once the transaction is ordered, appliedAtMillis the epoch millis it was
+// applied at. Both are -1 when unknown, an APPLIED transaction old enough to have been compacted has neither
+public record TxStatus(String uniqueId, State state, long sequence, long appliedAtMillis) implements Serializable {
+
+    public enum State {
+        UNKNOWN,     // never seen by this bank (or before its state was installed from a snapshot)
+        OUTSTANDING, // in this bank's outbox, not ordered yet
+        ORDERED,     // delivered with its global sequence, not applied yet
+        APPLIED
+    }
+}
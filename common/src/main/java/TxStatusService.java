@@ -0,0 +1,10 @@
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// RMI query interface of a bank for transaction status, bound under the bank's name next to BankService
+public interface TxStatusService extends Remote {
+
+    // Status of every "bankName:sequence" unique ID in the list, in the same order
+    List<TxStatus> checkTxStatus(List<String> uniqueIds) throws RemoteException;
+}
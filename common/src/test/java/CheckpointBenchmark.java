@@ -0,0 +1,124 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Compares checkpoint write and load times for accounts of growing size:
+// Java serialization of the old Pair (a map of CurrencyInfo objects), Java serialization of the current Pair
+// (a CurrencyLedger) and the fixed layout LedgerCheckpoint that is loaded through a memory mapping.
+// Files go to a temporary directory, writes are not forced so the numbers show the format and not the disk
+// Usage: CheckpointBenchmark [iterationsPerRun]
+public class CheckpointBenchmark {
+
+    private static final int[] CURRENCY_COUNTS = {6, 1_000, 100_000};
+
+    // What a currency looked like in the old snapshots
+    private static class LegacyCurrencyInfo implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String currencyName;
+        private final double rateToDollar;
+        private final double accountValue;
+
+        LegacyCurrencyInfo(String currencyName, double rateToDollar, double accountValue) {
+            this.currencyName = currencyName;
+            this.rateToDollar = rateToDollar;
+            this.accountValue = accountValue;
+        }
+    }
+
+    // The old Pair, a map of currencies and a boxed order counter
+    private record LegacyPair(Map<String, LegacyCurrencyInfo> currencies, Integer orderCounter) implements Serializable {}
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        Path directory = Files.createTempDirectory("checkpoint-bench");
+
+        System.out.printf("[BENCH] %9s %-18s %12s %12s %12s%n", "currencies", "format", "bytes", "write ms", "load ms");
+        for (int count : CURRENCY_COUNTS) {
+            Map<String, Double> rates = new LinkedHashMap<>();
+            Map<String, LegacyCurrencyInfo> legacyCurrencies = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = "C" + i;
+                rates.put(name, 1 + i % 97 / 10.0);
+            }
+            CurrencyLedger ledger = new CurrencyLedger(rates);
+            for (int id = 0; id < ledger.size(); id++) {
+                ledger.deposit(id, id * 3.5);
+                legacyCurrencies.put(ledger.name(id), new LegacyCurrencyInfo(ledger.name(id), ledger.rate(id), ledger.balance(id)));
+            }
+            LegacyPair legacyPair = new LegacyPair(legacyCurrencies, 12345);
+            Pair pair = new Pair(ledger, 12345);
+
+            Path legacyFile = directory.resolve("legacy-" + count);
+            Path pairFile = directory.resolve("pair-" + count);
+            Path checkpointFile = directory.resolve("checkpoint-" + count);
+
+            report(count, "legacy Pair", legacyFile, iterations,
+                    () -> serialize(legacyFile, legacyPair),
+                    () -> deserialize(legacyFile));
+            report(count, "Pair (ledger)", pairFile, iterations,
+                    () -> serialize(pairFile, pair),
+                    () -> deserialize(pairFile));
+            report(count, "LedgerCheckpoint", checkpointFile, iterations,
+                    () -> {
+                        try (FileChannel channel = FileChannel.open(checkpointFile, StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                            LedgerCheckpoint.write(channel, ledger, 12345);
+                        }
+                    },
+                    () -> LedgerCheckpoint.load(checkpointFile));
+        }
+
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void report(int count, String format, Path file, int iterations, Task write, Task load) throws Exception {
+        // One round to warm up and to have a file to load
+        write.run();
+        load.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            write.run();
+        }
+        double writeMs = (System.nanoTime() - start) / 1e6 / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            load.run();
+        }
+        double loadMs = (System.nanoTime() - start) / 1e6 / iterations;
+
+        System.out.printf("[BENCH] %9d %-18s %12d %12.3f %12.3f%n", count, format, Files.size(file), writeMs, loadMs);
+    }
+
+    private static void serialize(Path file, Object value) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(value);
+        }
+    }
+
+    private static Object deserialize(Path file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return in.readObject();
+        }
+    }
+}
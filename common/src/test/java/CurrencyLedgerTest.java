@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CurrencyLedgerTest {
+
+    private static Map<String, Double> rates() {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        rates.put("USD", 1.0);
+        rates.put("EUR", 1.08);
+        rates.put("NOK", 0.093);
+        rates.put("GBP", 1.27);
+        rates.put("JPY", 0.0067);
+        return rates;
+    }
+
+    @Test
+    void totalMatchesTheOriginalQuickBalanceFormula() {
+        Map<String, Double> rates = rates();
+        CurrencyLedger ledger = new CurrencyLedger(rates);
+        Map<String, Double> balances = new LinkedHashMap<>();
+        rates.keySet().forEach(currency -> balances.put(currency, 0.0));
+
+        String[][] operations = {
+                {"deposit", "USD", "100"}, {"deposit", "EUR", "33.3"}, {"deposit", "NOK", "1234.5"},
+                {"addInterest", "EUR", "2.5"}, {"deposit", "JPY", "99999"}, {"addInterest", null, "1.5"},
+                {"deposit", "GBP", "-12.75"}, {"addInterest", "NOK", "7"}};
+        for (String[] op : operations) {
+            double amount = Double.parseDouble(op[2]);
+            if (op[0].equals("deposit")) {
+                ledger.deposit(ledger.requireId(op[1]), amount);
+                balances.merge(op[1], amount, Double::sum);
+            } else if (op[1] == null) {
+                ledger.addInterestToAll(amount);
+                balances.replaceAll((currency, balance) -> balance + balance * (amount / 100f));
+            } else {
+                ledger.addInterest(ledger.requireId(op[1]), amount);
+                balances.merge(op[1], balances.get(op[1]) * (amount / 100f), Double::sum);
+            }
+        }
+
+        // getQuickBalance as it used to be, walking the currency map
+        for (String currency : rates.keySet()) {
+            double expected = balances.get(currency);
+            for (String other : rates.keySet()) {
+                if (!other.equals(currency)) {
+                    expected += balances.get(other) * rates.get(other) / rates.get(currency);
+                }
+            }
+            assertEquals(expected, ledger.total(ledger.requireId(currency)), currency);
+        }
+    }
+
+    @Test
+    void digestFollowsTheAppliedTransactions() {
+        CurrencyLedger a = new CurrencyLedger(rates());
+        CurrencyLedger b = new CurrencyLedger(rates());
+        Transaction first = Transaction.of("deposit USD 10", "bank-R1", 0);
+        Transaction second = Transaction.of("addInterest 3", "bank-R2", 0);
+
+        for (Transaction tx : new Transaction[]{first, second}) {
+            assertTrue(a.apply(tx));
+            a.recordApplied(tx);
+            assertTrue(b.apply(tx));
+            b.recordApplied(tx);
+        }
+        assertEquals(a.digest(), b.digest());
+
+        // Same balances, but b has seen one more (failed) transaction
+        Transaction unknown = Transaction.of("deposit XXX 1", "bank-R1", 1);
+        assertFalse(b.apply(unknown));
+        b.recordApplied(unknown);
+        assertNotEquals(a.digest(), b.digest());
+    }
+
+    @Test
+    void copiesDoNotShareBalances() {
+        CurrencyLedger ledger = new CurrencyLedger(rates());
+        CurrencyLedger copy = new CurrencyLedger(ledger);
+
+        ledger.deposit(ledger.requireId("USD"), 5);
+
+        assertEquals(0.0, copy.balance(copy.requireId("USD")));
+        assertNotEquals(ledger.digest(), copy.digest());
+    }
+}
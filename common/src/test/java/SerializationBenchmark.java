@@ -0,0 +1,95 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compares the wire size and encode/decode throughput of a batch of transactions in three forms:
+// the old (command, uniqueId) string record, the typed Transaction with default serialization, and TransactionBatch.
+// Every form goes through an ObjectOutputStream like an RMI argument does
+// Usage: SerializationBenchmark [secondsPerRun]
+public class SerializationBenchmark {
+
+    private static final int[] BATCH_SIZES = {1, 16, 256};
+    private static final String[] ORIGINS = {"bank-R1", "bank-R2", "bank-R3"};
+    private static final String[] CURRENCIES = {"USD", "NOK", "EUR", "GBP", "CHF", "DKK"};
+
+    // What a transaction looked like on the wire before the typed encoding
+    private record LegacyTransaction(String command, String uniqueId) implements Serializable {}
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+
+        System.out.printf("[BENCH] %6s %-18s %12s %10s %14s %14s%n",
+                "batch", "form", "bytes", "bytes/tx", "encode tx/s", "decode tx/s");
+        for (int batchSize : BATCH_SIZES) {
+            List<String> commands = new ArrayList<>(batchSize);
+            List<LegacyTransaction> legacy = new ArrayList<>(batchSize);
+            List<Transaction> typed = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                String command = switch (i % 4) {
+                    case 0, 1 -> "deposit " + CURRENCIES[i % CURRENCIES.length] + " " + (i * 7 % 500);
+                    case 2 -> "addInterest " + CURRENCIES[i % CURRENCIES.length] + " 2.5";
+                    default -> "addInterest 1.5";
+                };
+                String origin = ORIGINS[i % ORIGINS.length];
+                commands.add(command);
+                legacy.add(new LegacyTransaction(command, origin + ":" + (1000 + i)));
+                typed.add(Transaction.of(command, origin, 1000 + i));
+            }
+
+            run(batchSize, "legacy record", new ArrayList<>(legacy), seconds);
+            run(batchSize, "typed, default", new ArrayList<>(typed), seconds);
+            run(batchSize, "TransactionBatch", new TransactionBatch(typed), seconds);
+        }
+    }
+
+    private static void run(int batchSize, String form, Object payload, int seconds) throws Exception {
+        byte[] encoded = encode(payload);
+
+        // Warm up, then measure each direction for the given time
+        long deadline = System.nanoTime() + 500_000_000L;
+        while (System.nanoTime() < deadline) {
+            decode(encode(payload));
+        }
+
+        long encodes = 0;
+        long start = System.nanoTime();
+        deadline = start + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            encode(payload);
+            encodes++;
+        }
+        double encodeSeconds = (System.nanoTime() - start) / 1e9;
+
+        long decodes = 0;
+        start = System.nanoTime();
+        deadline = start + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            decode(encoded);
+            decodes++;
+        }
+        double decodeSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("[BENCH] %6d %-18s %12d %10.1f %14.0f %14.0f%n",
+                batchSize, form, encoded.length, encoded.length / (double) batchSize,
+                encodes * batchSize / encodeSeconds, decodes * batchSize / decodeSeconds);
+    }
+
+    private static byte[] encode(Object payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object decode(byte[] encoded) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(encoded))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionCodecTest {
+
+    private static byte[] encode(List<Transaction> transactions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TransactionCodec.write(new DataOutputStream(bytes), transactions);
+        return bytes.toByteArray();
+    }
+
+    private static List<Transaction> decode(byte[] bytes) throws IOException {
+        return TransactionCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void roundTripsEveryKindOfTransaction() throws IOException {
+        List<Transaction> transactions = List.of(
+                Transaction.of("deposit USD 100", "bank-R1", 0),
+                Transaction.of("deposit EUR 10.25", "bank-R1", 1),
+                Transaction.of("deposit NOK -3", "bank-R2", 7),
+                Transaction.of("addInterest 2.5", "bank-R1", 2),
+                Transaction.of("addInterest GBP 10", "bank-R2", 8),
+                Transaction.of("Deposit   USD 100.0", "bank-R1", 3),
+                Transaction.of("deposit USD lots", "bank-R1", 4),
+                Transaction.of(Transaction.Opcode.DEPOSIT, "USD", 1e300, "bank-R3", Long.MAX_VALUE));
+
+        List<Transaction> decoded = decode(encode(transactions));
+
+        assertEquals(transactions, decoded);
+        for (int i = 0; i < transactions.size(); i++) {
+            assertEquals(transactions.get(i).command(), decoded.get(i).command());
+            assertEquals(transactions.get(i).uniqueId(), decoded.get(i).uniqueId());
+        }
+    }
+
+    @Test
+    void keepsTheTextOnlyWhenItIsNotCanonical() throws IOException {
+        List<Transaction> decoded = decode(encode(List.of(
+                Transaction.of("deposit USD 100", "bank-R1", 0),
+                Transaction.of("deposit  usd 100.0", "bank-R1", 1))));
+
+        assertNull(decoded.get(0).text());
+        assertEquals("deposit USD 100", decoded.get(0).command());
+        assertEquals("deposit  usd 100.0", decoded.get(1).command());
+        assertEquals(100.0, decoded.get(1).amount());
+    }
+
+    @Test
+    void keepsTheSignOfNegativeZero() throws IOException {
+        Transaction negativeZero = Transaction.of(Transaction.Opcode.DEPOSIT, "USD", -0.0, "bank-R1", 0);
+
+        Transaction decoded = decode(encode(List.of(negativeZero))).get(0);
+
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(decoded.amount()));
+        assertEquals(negativeZero.fingerprint(), decoded.fingerprint());
+    }
+
+    @Test
+    void rejectsAnUnknownOpcode() throws IOException {
+        byte[] bytes = encode(List.of(Transaction.of("deposit USD 1", "bank-R1", 0)));
+        bytes[1] = 0x0F; // header of the first entry
+
+        assertThrows(IOException.class, () -> decode(bytes));
+    }
+
+    @Test
+    void rejectsAStringIndexOutOfOrder() throws IOException {
+        byte[] bytes = encode(List.of(Transaction.of("deposit USD 1", "bank-R1", 0)));
+        bytes[2] = 5; // index of the origin, the table is still empty
+
+        assertThrows(IOException.class, () -> decode(bytes));
+    }
+
+    @Test
+    void failsOnATruncatedBatch() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            transactions.add(Transaction.of("deposit USD " + i, "bank-R1", i));
+        }
+        byte[] bytes = encode(transactions);
+
+        assertThrows(IOException.class, () -> decode(Arrays.copyOf(bytes, bytes.length - 3)));
+    }
+}
@@ -0,0 +1,126 @@
+import java.net.InetSocketAddress;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compares the two transports on loopback with the call that dominates a run, an ordered batch pushed to a bank
+// that answers with a DeliveryAck. Callers hammer one service from several threads for a fixed time, each call's
+// latency is recorded. RMI goes through an in-process registry, NIO through a directory host and a client
+// transport in this JVM, both still over real sockets
+// Usage: TransportBenchmark [seconds] [batchSize] [callerThreads...]
+public class TransportBenchmark {
+
+    private static final int RMI_REGISTRY_PORT = 1199;
+    private static final int NIO_DIRECTORY_PORT = 1200;
+
+    public interface BatchSink extends Remote {
+        DeliveryAck deliver(long firstSequence, List<Transaction> batch) throws RemoteException;
+    }
+
+    private static class CountingSink implements BatchSink {
+        private final AtomicLong delivered = new AtomicLong();
+
+        @Override
+        public DeliveryAck deliver(long firstSequence, List<Transaction> batch) {
+            long applied = delivered.addAndGet(batch.size());
+            return new DeliveryAck(firstSequence + batch.size(), applied, applied * 31, applied);
+        }
+    }
+
+    private record Result(long calls, double opsPerSecond, double p50Micros, double p99Micros) {}
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int[] callerCounts = args.length > 2
+                ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1, 8};
+
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(Transaction.of(Transaction.Opcode.DEPOSIT, "USD", 10.5 + i, "bank-R1", i + 1));
+        }
+
+        LocateRegistry.createRegistry(RMI_REGISTRY_PORT);
+        RmiTransport rmi = new RmiTransport("localhost", RMI_REGISTRY_PORT);
+        rmi.export("sink", BatchSink.class, new CountingSink());
+        BatchSink rmiSink = rmi.lookup("sink", BatchSink.class);
+
+        NioTransport nioServer = NioTransport.directoryHost(NIO_DIRECTORY_PORT, "localhost");
+        NioTransport nioClient = NioTransport.client("localhost", new InetSocketAddress("localhost", NIO_DIRECTORY_PORT));
+        nioServer.export("sink", BatchSink.class, new CountingSink());
+        BatchSink nioSink = nioClient.lookup("sink", BatchSink.class);
+
+        // Warm up both paths before measuring
+        run(rmiSink, batch, 4, 1);
+        run(nioSink, batch, 4, 1);
+
+        System.out.printf("[BENCH] %-9s %7s %10s %12s %10s %10s%n", "transport", "callers", "calls", "ops/s", "p50 us", "p99 us");
+        for (int callers : callerCounts) {
+            print("rmi", callers, run(rmiSink, batch, callers, seconds));
+            print("nio", callers, run(nioSink, batch, callers, seconds));
+        }
+
+        nioClient.close();
+        nioServer.close();
+        System.exit(0);
+    }
+
+    private static void print(String transport, int callers, Result result) {
+        System.out.printf("[BENCH] %-9s %7d %10d %12.0f %10.1f %10.1f%n", transport, callers, result.calls(),
+                result.opsPerSecond(), result.p50Micros(), result.p99Micros());
+    }
+
+    private static Result run(BatchSink sink, List<Transaction> batch, int callers, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<long[]> latencies = new ArrayList<>();
+        int[] counts = new int[callers];
+        Thread[] threads = new Thread[callers];
+        for (int c = 0; c < callers; c++) {
+            long[] samples = new long[1 << 20];
+            latencies.add(samples);
+            int caller = c;
+            threads[c] = new Thread(() -> {
+                int n = 0;
+                long sequence = 1;
+                try {
+                    while (System.nanoTime() < deadline && n < samples.length) {
+                        long start = System.nanoTime();
+                        sink.deliver(sequence, batch);
+                        samples[n++] = System.nanoTime() - start;
+                        sequence += batch.size();
+                    }
+                } catch (RemoteException e) {
+                    System.out.println("[BENCH] Call failed: " + e.getMessage());
+                }
+                counts[caller] = n;
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < callers; c++) {
+            System.arraycopy(latencies.get(c), 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        if (total == 0) {
+            return new Result(0, 0, 0, 0);
+        }
+        return new Result(total, total / (double) seconds, all[total / 2] / 1000.0,
+                all[Math.min(total - 1, (int) (total * 0.99))] / 1000.0);
+    }
+}
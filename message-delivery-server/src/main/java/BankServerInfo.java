@@ -1,14 +1,21 @@
+import java.util.concurrent.atomic.AtomicLong;
 
 // A data structure holding information about a bank, its binding name and stub on the registry
 // The stub is stored since it will be used frequently, this is to offload the registry
+// It also tracks the delivered high-water mark, the next global sequence the bank expects from the MDS, and how far
+// the bank has made its state durable
 public class BankServerInfo {
 
     private final String name;
     private final BankService bank;
+    private final AtomicLong deliveredSequence;
+    private final AtomicLong durableSequence;
 
-    public BankServerInfo(BankService bank, String name) {
+    public BankServerInfo(BankService bank, String name, long deliveredSequence) {
         this.bank = bank;
         this.name = name;
+        this.deliveredSequence = new AtomicLong(deliveredSequence);
+        this.durableSequence = new AtomicLong(deliveredSequence);
     }
 
     public String getName(){
@@ -18,4 +25,21 @@ public class BankServerInfo {
     public BankService getBank() {
         return bank;
     }
+
+    public long getDeliveredSequence() {
+        return deliveredSequence.get();
+    }
+
+    public void setDeliveredSequence(long sequence) {
+        deliveredSequence.set(sequence);
+    }
+
+    public long getDurableSequence() {
+        return durableSequence.get();
+    }
+
+    // Acks overtake each other, the durable mark only moves forward
+    public void advanceDurableSequence(long sequence) {
+        durableSequence.accumulateAndGet(sequence, Math::max);
+    }
 }
@@ -0,0 +1,62 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// Calls forked on virtual threads that share one deadline. join waits for them until the deadline passes, close
+// interrupts whatever is still running and waits for it to stop, so no call outlives the scope it was forked in.
+// A blocked RMI or NIO call gives up when its thread is interrupted, a hung bank costs one parked virtual thread
+// until the deadline and never a platform thread.
+// The part of StructuredTaskScope (still a preview API in Java 21) the coordinator needs
+final class DeadlineScope implements AutoCloseable {
+
+    private final String name;
+    private final long deadline; // System.nanoTime
+    private final List<Thread> threads = new ArrayList<>();
+
+    DeadlineScope(String name, long timeoutMillis) {
+        this.name = name;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+    }
+
+    // Starts call on its own virtual thread, the future holds its result once join has returned
+    <T> Future<T> fork(Callable<T> call) {
+        FutureTask<T> task = new FutureTask<>(call);
+        threads.add(Thread.ofVirtual().name(name).start(task));
+        return task;
+    }
+
+    // Waits until every forked call is done or the deadline has passed, false if some call missed the deadline
+    boolean join() throws InterruptedException {
+        for (Thread thread : threads) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 ? thread.isAlive() : !thread.join(Duration.ofNanos(remaining))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Cancels calls that are still running and waits until their threads have ended
+    @Override
+    public void close() {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
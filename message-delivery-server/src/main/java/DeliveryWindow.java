@@ -0,0 +1,90 @@
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// The batches in flight to one member. Batches go out back-to-back without waiting for the ones before them, each
+// call on its own virtual thread, and replies are taken in whatever order they come back. Every call has a
+// deadline, close cancels what is still in flight. Only the members drain task uses a window
+final class DeliveryWindow implements AutoCloseable {
+
+    // The banks answer to the batch starting at from, or why there is none
+    record Reply(long from, DeliveryAck ack, RemoteException failure) {}
+
+    private record InFlight(long deadline, Thread thread) {}
+
+    private final BankServerInfo member;
+    private final int size;
+    private final long deadlineNanos;
+
+    // Keyed by the batches first sequence
+    private final Map<Long, InFlight> inFlight = new HashMap<>();
+    private final BlockingQueue<Reply> replies = new LinkedBlockingQueue<>();
+
+    DeliveryWindow(BankServerInfo member, int size, long deadlineMillis) {
+        this.member = member;
+        this.size = size;
+        this.deadlineNanos = deadlineMillis * 1_000_000;
+    }
+
+    boolean hasRoom() {
+        return inFlight.size() < size;
+    }
+
+    boolean isEmpty() {
+        return inFlight.isEmpty();
+    }
+
+    // Sends the batch starting at from without waiting for an answer
+    void send(long from, List<Transaction> batch) {
+        TransactionBatch wrapped = new TransactionBatch(batch);
+        Thread thread = Thread.ofVirtual().name("deliver-" + member.getName()).start(() -> {
+            try {
+                replies.add(new Reply(from, member.getBank().deliverOrderedBatch(from, wrapped), null));
+            } catch (RemoteException e) {
+                replies.add(new Reply(from, null, e));
+            } catch (RuntimeException e) {
+                replies.add(new Reply(from, null, new RemoteException("Delivery failed", e)));
+            }
+        });
+        inFlight.put(from, new InFlight(System.nanoTime() + deadlineNanos, thread));
+    }
+
+    // Waits for the next reply, null if a batch in flight missed its deadline first
+    Reply next() throws InterruptedException {
+        long earliest = Long.MAX_VALUE;
+        for (InFlight call : inFlight.values()) {
+            earliest = Math.min(earliest, call.deadline());
+        }
+        Reply reply = replies.poll(earliest - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (reply != null) {
+            inFlight.remove(reply.from());
+        }
+        return reply;
+    }
+
+    // Cancels the calls still in flight and waits until their threads have ended
+    @Override
+    public void close() {
+        for (InFlight call : inFlight.values()) {
+            call.thread().interrupt();
+        }
+        boolean interrupted = false;
+        for (InFlight call : inFlight.values()) {
+            while (call.thread().isAlive()) {
+                try {
+                    call.thread().join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        inFlight.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
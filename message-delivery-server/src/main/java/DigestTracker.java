@@ -0,0 +1,45 @@
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Compares the state digests the members of a group send back with their ACKs.
+// The first member to report an order counter sets the digest for it, every later report at the same counter must
+// match. A member that does not has diverged from the group, it is reported once. Only the latest WINDOW counters
+// are remembered, members report within a few batches of each other
+public class DigestTracker {
+
+    private static final int WINDOW = 4096;
+
+    private record Reference(String bankName, long digest) {}
+
+    private final String groupName;
+    private final TreeMap<Long, Reference> references = new TreeMap<>();
+    private final Set<String> diverged = new HashSet<>();
+
+    public DigestTracker(String groupName) {
+        this.groupName = groupName;
+    }
+
+    // Records the digest a member reported for its state at order counter counter
+    public synchronized void report(String bankName, long counter, long digest) {
+        if (counter < 0) {
+            return;
+        }
+        Reference reference = references.putIfAbsent(counter, new Reference(bankName, digest));
+        if (reference == null) {
+            while (references.size() > WINDOW) {
+                references.pollFirstEntry();
+            }
+            return;
+        }
+        if (reference.digest() != digest && diverged.add(bankName)) {
+            System.out.printf("[MDS] [WARN] Bank ´%s´ of group %s diverged at order counter %d: digest %016x, ´%s´ has %016x%n",
+                    bankName, groupName, counter, digest, reference.bankName(), reference.digest());
+        }
+    }
+
+    // Forgets a bank that left, it starts over if it rejoins
+    public synchronized void forget(String bankName) {
+        diverged.remove(bankName);
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Phi accrual failure detector for the members of one group.
+// Every member gets a lightweight heartbeat at a fixed interval. The detector learns the distribution of the
+// time between replies and turns the time since the last reply into a suspicion level (phi), a member whose
+// phi passes the threshold is evicted. Nothing on the delivery path ever waits for the detector
+public class FailureDetector {
+
+    private static final long HEARTBEAT_INTERVAL_MS = 500;
+    private static final double PHI_THRESHOLD = 8.0;
+
+    // How many inter-arrival times are remembered per member
+    private static final int WINDOW_SIZE = 100;
+
+    // Keeps a very regular member from being suspected after a single late reply
+    private static final double MIN_STD_DEVIATION_MS = 100;
+
+    // Pause (e.g. GC) a member may take without being suspected
+    private static final long ACCEPTABLE_PAUSE_MS = 1000;
+
+    private final TransactionCoordinator coordinator;
+    // Ticks this group's detector, the heartbeats themselves run on virtual threads
+    private final ScheduledExecutorService scheduler;
+    // Keyed by member incarnation, a bank that restarts under the same name starts with a fresh history
+    private final Map<BankServerInfo, HeartbeatHistory> histories = new ConcurrentHashMap<>();
+
+    public FailureDetector(TransactionCoordinator coordinator) {
+        this.coordinator = coordinator;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "failure-detector-" + coordinator.getGroup().getGroupName());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Start sending heartbeats to the group members
+    public void start() {
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (Exception e) {
+                // An exception would cancel the schedule for this group
+                e.printStackTrace();
+            }
+        }, HEARTBEAT_INTERVAL_MS, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Stops the heartbeats, a round already under way ends at its deadline
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // Evict suspected members and send the next round of heartbeats
+    private void tick() {
+        long now = System.currentTimeMillis();
+        Group group = coordinator.getGroup();
+
+        // Forget members that left or were evicted
+        histories.keySet().removeIf(member -> !group.isMember(member));
+
+        List<BankServerInfo> due = new ArrayList<>();
+        for (BankServerInfo member : group.getMembers()) {
+            HeartbeatHistory history = histories.computeIfAbsent(member, m -> new HeartbeatHistory(now));
+
+            double phi = history.phi(now);
+            if (phi > PHI_THRESHOLD) {
+                System.out.printf("[MDS] Suspecting bank ´%s´ (phi %.1f)%n", member.getName(), phi);
+                histories.remove(member);
+                coordinator.evictFailedServer(member);
+                continue;
+            }
+
+            // At most one heartbeat in flight per member
+            if (history.inFlight.compareAndSet(false, true)) {
+                due.add(member);
+            }
+        }
+
+        if (!due.isEmpty()) {
+            Thread.ofVirtual().name("heartbeat-" + group.getGroupName()).start(() -> heartbeatRound(due));
+        }
+    }
+
+    // One heartbeat to each member, all of them due within the interval. Calls still running at the deadline
+    // are cancelled, the next tick sends new ones
+    private void heartbeatRound(List<BankServerInfo> members) {
+        try (DeadlineScope scope = new DeadlineScope("heartbeat-" + coordinator.getGroup().getGroupName(), HEARTBEAT_INTERVAL_MS)) {
+            for (BankServerInfo member : members) {
+                HeartbeatHistory history = histories.get(member);
+                if (history == null) {
+                    // Evicted since the tick, its history is gone
+                    continue;
+                }
+                scope.fork(() -> {
+                    try {
+                        member.getBank().heartbeat();
+                        history.arrived(System.currentTimeMillis());
+                    } finally {
+                        // A failed or cancelled call records no arrival, which is what raises phi
+                        history.inFlight.set(false);
+                    }
+                    return null;
+                });
+            }
+            scope.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Inter-arrival times of a members heartbeat replies, kept in a ring buffer with running sums
+    private static class HeartbeatHistory {
+        private final double[] intervals = new double[WINDOW_SIZE];
+        private int count = 0;
+        private int next = 0;
+        private double sum = 0;
+        private double sumOfSquares = 0;
+        private long lastArrival;
+
+        private final AtomicBoolean inFlight = new AtomicBoolean(false);
+
+        // Seeded with the expected interval so a new member is not suspected before it has any history
+        HeartbeatHistory(long now) {
+            lastArrival = now;
+            add(HEARTBEAT_INTERVAL_MS - HEARTBEAT_INTERVAL_MS / 4.0);
+            add(HEARTBEAT_INTERVAL_MS + HEARTBEAT_INTERVAL_MS / 4.0);
+        }
+
+        synchronized void arrived(long now) {
+            add(now - lastArrival);
+            lastArrival = now;
+        }
+
+        private void add(double interval) {
+            if (count == WINDOW_SIZE) {
+                sum -= intervals[next];
+                sumOfSquares -= intervals[next] * intervals[next];
+            } else {
+                count++;
+            }
+            intervals[next] = interval;
+            sum += interval;
+            sumOfSquares += interval * interval;
+            next = (next + 1) % WINDOW_SIZE;
+        }
+
+        // -log10 of the probability that a reply still arrives this late, using a logistic approximation
+        // of the normal distribution fitted to the observed intervals
+        synchronized double phi(long now) {
+            double mean = sum / count + ACCEPTABLE_PAUSE_MS;
+            double variance = sumOfSquares / count - (sum / count) * (sum / count);
+            double stdDeviation = Math.max(Math.sqrt(Math.max(variance, 0)), MIN_STD_DEVIATION_MS);
+
+            double y = (now - lastArrival - mean) / stdDeviation;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            if (now - lastArrival > mean) {
+                return -Math.log10(e / (1.0 + e));
+            }
+            return -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+    }
+}
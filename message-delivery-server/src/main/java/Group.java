@@ -12,9 +12,6 @@ public class Group {
     // A map for storting group members, their Binding name and their BankServerInfo
     private final Map<String, BankServerInfo> members = new ConcurrentHashMap<>();
 
-    // A group might have a snapshot which can be given to new joining members
-    private Pair snapshot;
-
     public Group(String groupName){
         this.groupName = groupName;
     }
@@ -29,6 +26,21 @@ public class Group {
         members.remove(bankName);
     }
 
+    // Remove this incarnation of a bank, unless the bank has already rejoined under the same name
+    public void leave(BankServerInfo member){
+        members.remove(member.getName(), member);
+    }
+
+    // Check if a bank is currently a member
+    public boolean isMember(String bankName){
+        return members.containsKey(bankName);
+    }
+
+    // Check if this incarnation of a bank is still the member, a restarted bank rejoins with a new BankServerInfo
+    public boolean isMember(BankServerInfo member){
+        return members.get(member.getName()) == member;
+    }
+
     // Get BankServerInfoAs list
     public List<BankServerInfo> getMembers() {
         return new ArrayList<>(members.values());
@@ -39,16 +51,6 @@ public class Group {
         return new ArrayList<>(members.keySet());
     }
 
-    // Get the snapshot
-    public Pair getCurrentBalance() {
-        return snapshot;
-    }
-
-    // Setter for snapshot
-    public void setCurrentBalance(Pair snapshot) {
-        this.snapshot = snapshot;
-    }
-
     // Getter for group name
     public String getGroupName() {
         return groupName;
@@ -1,103 +1,107 @@
+import java.io.IOException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
+// Exported as a remote object, never serialized by value
+@SuppressWarnings("serial")
 public class MessageDeliveryServiceImpl extends UnicastRemoteObject implements MessageDeliveryService{
 
     // A map of coordinators for multiple groups
     private final Map<String, TransactionCoordinator> coordinators;
 
-    // Registry location, change accordingly
-    private final String REGISTRY_IP = "localhost";
-    private final int REGISTRY_PORT = 1099;
+    // Longest one awaitExecution call waits, banks call again until their group is full
+    private static final long AWAIT_EXECUTION_MS = 5_000;
 
-    private final Registry registry;
-    private CountDownLatch latch = null;
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Lock latchLock = new ReentrantLock();
-    private boolean newBatch = true;
+    // Where joining banks are looked up
+    private final Transport transport;
 
-    public MessageDeliveryServiceImpl(ConcurrentHashMap<String, TransactionCoordinator> coordinators) throws RemoteException {
+    public MessageDeliveryServiceImpl(ConcurrentHashMap<String, TransactionCoordinator> coordinators, Transport transport) throws RemoteException {
         super();
         this.coordinators = coordinators;
-        // Get the registry
-        registry = LocateRegistry.getRegistry(REGISTRY_IP, REGISTRY_PORT);
+        this.transport = transport;
     }
 
     @Override
-    public Pair joinGroup(String groupName, String bankServer, int numberOfReplicas) throws RemoteException {
+    public JoinReply joinGroup(String groupName, String bankServer, long orderCounter) throws RemoteException {
+
+        // Get the coordinator for the group, groups are created on the first join
+        TransactionCoordinator coordinator = coordinators.computeIfAbsent(groupName, name -> {
+            TransactionCoordinator created = new TransactionCoordinator(new Group(name));
+            created.start();
+            return created;
+        });
 
         try{
-            // Create singualr access for creating a countdown latch, setting the newBatch flag to false (since a batch is being integrated)
-            latchLock.lock();
-            if(newBatch){
-                latch = new CountDownLatch(numberOfReplicas);
-                newBatch = false;
-            }
-            // Release the lock
-
-            latchLock.unlock();
-
-            // Get the coordinator for the group
-            TransactionCoordinator coordinator = coordinators.get(groupName);
-
-            // Lookup the joining bank in the registry and create a bankserverinfo object
-            BankService bank = (BankService) registry.lookup(bankServer);
-            BankServerInfo bankServerInfo = new BankServerInfo(bank, bankServer);
-
-            // Join the coordinators group
-            coordinator.getGroup().join(bankServerInfo);
-            System.out.println("[MDS] Bank ´" + bankServer + "´ joined group: " + groupName);
-            // Countdown the created latch, signifying that bank i has been integrated
-            latch.countDown();
-
-            // Return the snapshot if it exists for synch on new joins
-            return coordinator.getGroup().getCurrentBalance(); // bank sets its balance to this value if present
+            // Lookup the joining bank
+            BankService bank = lookupBank(bankServer);
+
+            // Join the coordinators group, the bank is told where it starts and which snapshot to pull if any
+            JoinReply reply = coordinator.join(bank, bankServer, orderCounter);
+            System.out.println("[MDS] Bank ´" + bankServer + "´ joined group: " + groupName
+                    + (reply.hasSnapshot() ? " from snapshot at " : " at ") + reply.startSequence());
+
+            // Start delivering the log suffix past its starting point, the bank takes it once its state is installed
+            coordinator.broadCastTransactions();
+            return reply;
         }
         catch(NotBoundException e){
             System.err.println(e.getMessage());
-            // Release lock upon failure
-            latchLock.unlock();
             return null;
         }
     }
 
+    @Override
+    public StateChunk fetchSnapshotChunk(String groupName, long snapshotId, int firstId) throws RemoteException {
+        TransactionCoordinator coordinator = coordinators.get(groupName);
+        return coordinator == null ? null : coordinator.getTransfers().chunk(snapshotId, firstId);
+    }
+
+    private BankService lookupBank(String bankServer) throws RemoteException, NotBoundException {
+        try {
+            return transport.lookup(bankServer, BankService.class);
+        } catch (RemoteException | NotBoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RemoteException("Lookup of " + bankServer + " failed", e);
+        }
+    }
+
     @Override
     public void leaveGroup(String groupName, String bankServer) throws RemoteException {
-        // Remove the bank from the group
-        Group group = coordinators.get(groupName).getGroup();
-        group.leave(bankServer);
+        // Remove the bank from the group, and its digest state with it
+        TransactionCoordinator coordinator = coordinators.get(groupName);
+        coordinator.getGroup().leave(bankServer);
+        coordinator.getDigests().forget(bankServer);
         System.out.println("[MDS] Bank '" + bankServer + "' left group: " + groupName );
     }
 
     @Override
-    public void sendTransactions(String groupName, List<Transaction> transactions) throws RemoteException {
+    public long sendTransactions(String groupName, List<Transaction> transactions) throws RemoteException {
 
-        // Lock when a bank wants to send transactions
-        lock.lock();
-        try{
-            // Set the total order view of the received transactions (appended, order is implied by iterating over list)
-            List<Transaction> orderedTransactions = coordinators.get(groupName).setTransactionOrder(transactions);
-            System.out.println("[MDS] Broadcasting transactions to group: " + groupName);
-
-            // Broadcast the view to all members of group
-            coordinators.get(groupName).broadCastTransactions(orderedTransactions);
-
-            // Remove the getSyncedBalance from the global view
-            coordinators.get(groupName).removeGetSyncedBalance();
-            
-        }finally{
-            // Always release the lock
-            lock.unlock();
+        TransactionCoordinator coordinator = coordinators.get(groupName);
+
+        // Set the total order view of the received transactions (appended, order is implied by iterating over list)
+        // This only takes the groups own ordering lock, other groups are not affected
+        long ack = coordinator.setTransactionOrder(transactions);
+
+        // Dissemination runs asynchronously, each member only receives what it has not seen yet
+        System.out.println("[MDS] Broadcasting transactions to group: " + groupName);
+        coordinator.broadCastTransactions();
+        return ack;
+    }
+
+    // Read index for consistent reads, nothing is added to the log
+    @Override
+    public long getCommittedSequence(String groupName) throws RemoteException {
+        TransactionCoordinator coordinator = coordinators.get(groupName);
+        if (coordinator == null) {
+            throw new RemoteException("No such group: " + groupName);
         }
+        return coordinator.committedSequence();
     }
 
     // Self explanatory
@@ -112,18 +116,15 @@ public class MessageDeliveryServiceImpl extends UnicastRemoteObject implements M
         return coordinators.get(groupName).getGroup().getMembersByNames();
     }
 
-    // Banks call this awaiting the latch, when the latch is zero it means that all banks in the batch
-    // are ready to go and can begin executing
+    // Banks call this to wait until numberOfReplicas banks have joined their group, then they can begin executing.
+    // Banks joining later go straight through
     @Override
-    public void awaitExecution(){
+    public boolean awaitExecution(String groupName, int numberOfReplicas) throws RemoteException {
         try {
-            latch.await();
+            return coordinators.get(groupName).awaitJoins(numberOfReplicas, AWAIT_EXECUTION_MS);
         } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-        finally {
-            // When the latch frees, then a new batch can be assumed to join on other instantiations of replicas
-            newBatch = true;
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted waiting for group " + groupName, e);
         }
     }
 }
@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The total order of a group, an append-only log of transactions split into fixed size segments.
+// A transaction's global sequence is its position in the log, sequences are never reused.
+// Segments below the stable point (acknowledged by every member) are dropped, so memory stays flat
+public class OrderingLog {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    // segments.get(0) holds the sequences starting at baseSequence
+    private final List<Transaction[]> segments = new ArrayList<>();
+    private long baseSequence = 0;
+    private long tail = 0; // next sequence to assign
+
+    // Highest counter ordered per origin bank. Banks number their transactions without gaps and a transaction
+    // is only ordered right after its predecessor, so this is also the cumulative ack for the origin, and
+    // anything at or below it has been ordered before (this also covers dropped segments).
+    // Indexed by the origin id of the bank name, -1 where nothing has been ordered
+    private long[] orderedWatermarks = new long[0];
+
+    // Appends the transaction unless it has been ordered before, returns false for duplicates.
+    // A transaction that would leave a gap after its origins watermark is not taken either, the bank resends it
+    public synchronized boolean append(Transaction tx) {
+        if (contains(tx)) {
+            return false;
+        }
+        if (tx.sequence() > acknowledged(tx.originId()) + 1) {
+            return false;
+        }
+        if (tx.originId() >= orderedWatermarks.length) {
+            int length = orderedWatermarks.length;
+            orderedWatermarks = Arrays.copyOf(orderedWatermarks, Math.max(tx.originId() + 1, length * 2));
+            Arrays.fill(orderedWatermarks, length, orderedWatermarks.length, -1L);
+        }
+        orderedWatermarks[tx.originId()] = tx.sequence();
+
+        int offset = (int) ((tail - baseSequence) % SEGMENT_SIZE);
+        if (offset == 0) {
+            segments.add(new Transaction[SEGMENT_SIZE]);
+        }
+        segments.get(segments.size() - 1)[offset] = tx;
+        tail++;
+        return true;
+    }
+
+    // Lets the log start at a sequence other than 0, for a group seeded by a bank that recovered its state at
+    // that order counter. Only valid while the log is empty
+    public synchronized void startAt(long sequence) {
+        if (tail != baseSequence || !segments.isEmpty()) {
+            throw new IllegalStateException("Log already holds transactions");
+        }
+        baseSequence = sequence;
+        tail = sequence;
+    }
+
+    // Returns the transactions with sequences in [from, to)
+    public synchronized List<Transaction> read(long from, long to) {
+        if (from < baseSequence) {
+            throw new IllegalStateException("Sequence " + from + " has been truncated, log starts at " + baseSequence);
+        }
+        to = Math.min(to, tail);
+
+        List<Transaction> out = new ArrayList<>((int) Math.max(0, to - from));
+        for (long seq = from; seq < to; seq++) {
+            long relative = seq - baseSequence;
+            out.add(segments.get((int) (relative / SEGMENT_SIZE))[(int) (relative % SEGMENT_SIZE)]);
+        }
+        return out;
+    }
+
+    // Drops every whole segment that lies below the stable point
+    public synchronized void truncate(long stableSequence) {
+        while (!segments.isEmpty() && baseSequence + SEGMENT_SIZE <= Math.min(stableSequence, tail)) {
+            segments.remove(0);
+            baseSequence += SEGMENT_SIZE;
+        }
+    }
+
+    // Origins are ordered without gaps, so the watermark alone decides whether a transaction was ordered before
+    private boolean contains(Transaction tx) {
+        return tx.sequence() <= acknowledged(tx.originId());
+    }
+
+    // Cumulative ack for an origin bank, its highest ordered counter or -1 if nothing has been ordered
+    public synchronized long acknowledged(String origin) {
+        return acknowledged(Transaction.originIdOf(origin));
+    }
+
+    public synchronized long acknowledged(int originId) {
+        return originId < orderedWatermarks.length ? orderedWatermarks[originId] : -1L;
+    }
+
+    // Sequence the next appended transaction will get
+    public synchronized long getTail() {
+        return tail;
+    }
+
+    // Lowest sequence still held in the log
+    public synchronized long getBaseSequence() {
+        return baseSequence;
+    }
+}
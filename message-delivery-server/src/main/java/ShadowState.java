@@ -0,0 +1,35 @@
+// The MDS's own deterministic replica of a group's account, fed by the ordering log.
+// It applies the ordered transactions to a CurrencyLedger with the same arithmetic the banks use, so it holds the
+// state every bank reaches at the same order counter, and snapshots for joining banks are produced here locally
+public class ShadowState {
+
+    // Ledger of the account, seeded from the first bank that joined the group
+    private final CurrencyLedger ledger;
+
+    // How many ordered transactions have been applied, the same counter the banks keep
+    private long orderCounter;
+
+    public ShadowState(Pair seed) {
+        ledger = new CurrencyLedger(seed.getLedger());
+        orderCounter = seed.getOrderCounter();
+    }
+
+    // Applies the next ordered transaction. Only deposit and addInterest change the state, anything that fails
+    // on the banks (unknown currency, RAW commands that did not parse) is skipped here as well
+    public synchronized void apply(Transaction tx) {
+        if (!ledger.apply(tx) && tx.opcode() == Transaction.Opcode.RAW) {
+            System.out.println("[MDS] Shadow state skipped ´" + tx.command() + "´");
+        }
+        ledger.recordApplied(tx);
+        orderCounter++;
+    }
+
+    // A copy of the current state, safe to hand out while later transactions are applied
+    public synchronized Pair snapshot() {
+        return new Pair(new CurrencyLedger(ledger), orderCounter);
+    }
+
+    public synchronized long orderCounter() {
+        return orderCounter;
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Snapshots of a group's shadow state handed to joining banks, which pull them chunk by chunk. Banks joining at the
+// same order counter share one snapshot. A snapshot is dropped once every bank it was handed to has read its last
+// chunk, or when nobody has read from it for EXPIRY_MS (the bank died during the transfer and will join again).
+// A snapshot copies only the balances, the names and rates are shared with the shadow state, so the MDS holds one
+// balance array per order counter banks are joining at and never a serialized copy of the account
+public class SnapshotTransfers {
+
+    private static final long EXPIRY_MS = 60_000;
+
+    private static final class Transfer {
+        private final Pair snapshot;
+        private int readers = 1;
+        private long lastRead = System.currentTimeMillis();
+
+        Transfer(Pair snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, Transfer> transfers = new HashMap<>();
+    private long nextId = 0;
+
+    // A transfer of the shadow states current state, shared with a running transfer at the same order counter.
+    // The caller holds the groups ordering lock, so the shadow state does not move meanwhile
+    public long open(ShadowState shadowState) {
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            expire(now);
+            for (Map.Entry<Long, Transfer> entry : transfers.entrySet()) {
+                Transfer transfer = entry.getValue();
+                if (transfer.snapshot.getOrderCounter() == shadowState.orderCounter()) {
+                    transfer.readers++;
+                    transfer.lastRead = now;
+                    return entry.getKey();
+                }
+            }
+            long id = nextId++;
+            transfers.put(id, new Transfer(shadowState.snapshot()));
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The chunk of transfer id starting at firstId, null if there is no such transfer (any more)
+    public StateChunk chunk(long id, int firstId) {
+        lock.lock();
+        try {
+            Transfer transfer = transfers.get(id);
+            if (transfer == null) {
+                return null;
+            }
+            transfer.lastRead = System.currentTimeMillis();
+            StateChunk chunk = StateChunk.of(transfer.snapshot.getLedger(), transfer.snapshot.getOrderCounter(), firstId);
+            if (chunk.isLast() && --transfer.readers == 0) {
+                transfers.remove(id);
+            }
+            return chunk;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Number of snapshots currently held
+    public int size() {
+        lock.lock();
+        try {
+            return transfers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expire(long now) {
+        Iterator<Transfer> iterator = transfers.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().lastRead > EXPIRY_MS) {
+                iterator.remove();
+            }
+        }
+    }
+}
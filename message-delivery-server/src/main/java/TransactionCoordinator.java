@@ -1,12 +1,12 @@
 import java.rmi.RemoteException;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CountDownLatch;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.atomic.AtomicInteger;
 
 // A class for coordinating transactions for a group and its members
@@ -15,153 +15,311 @@ public class TransactionCoordinator {
     private final Group group; // Group to coordinate
 
     private final AtomicInteger orderCounter = new AtomicInteger(0);
-    private final ExecutorService executor = Executors.newCachedThreadPool();
-    private final List<Transaction> transactionView = new CopyOnWriteArrayList<>();
+    // Drain tasks run on virtual threads, a member that hangs parks its task instead of holding a platform thread
+    private final ExecutorService executor;
+    private final OrderingLog transactionLog = new OrderingLog();
 
-    // Snapshot instantiated to null at first
-    private Pair snapshot = null;
+    // Members that currently have a drain task delivering to them
+    private final Set<String> draining = ConcurrentHashMap.newKeySet();
+
+    // Only sequencing is serialized, and only within this group
+    private final ReentrantLock orderingLock = new ReentrantLock();
+
+    // Deterministic replica of the account fed by the log, guarded by orderingLock. Created on the first join
+    private ShadowState shadowState = null;
+
+    // Evicts members that stop answering heartbeats, created by start
+    private FailureDetector failureDetector = null;
+
+    // Checks that every member reaches the same state digest at the same order counter
+    private final DigestTracker digests;
+
+    // Snapshots being pulled by joining banks
+    private final SnapshotTransfers transfers = new SnapshotTransfers();
+
+    // Signalled on every join, awaitJoins waits on it until the group has been full once
+    private final ReentrantLock joinLock = new ReentrantLock();
+    private final Condition joined = joinLock.newCondition();
+    private boolean filled = false;
+
+    // Pause before retrying a member that could not be reached or was not ready
+    private static final long RETRY_BACKOFF_MS = 200;
+
+    // How long one delivery call may take before it is cancelled and retried, generous for a big catch-up delta
+    private static final long DELIVERY_DEADLINE_MS = Long.getLong("mds.delivery.deadlineMs", 5_000);
+
+    // Batches in flight per member and the most transactions in one batch
+    private static final int DEFAULT_DELIVERY_WINDOW = Integer.getInteger("mds.delivery.window", 4);
+    private static final int DEFAULT_DELIVERY_BATCH_SIZE = Integer.getInteger("mds.delivery.batchSize", 256);
+    private final int deliveryWindow;
+    private final int deliveryBatchSize;
 
     public TransactionCoordinator(Group group) {
+        this(group, DEFAULT_DELIVERY_WINDOW, DEFAULT_DELIVERY_BATCH_SIZE);
+    }
+
+    public TransactionCoordinator(Group group, int deliveryWindow, int deliveryBatchSize) {
         this.group = group;
+        this.deliveryWindow = deliveryWindow;
+        this.deliveryBatchSize = deliveryBatchSize;
+        this.digests = new DigestTracker(group.getGroupName());
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("drain-" + group.getGroupName() + "-", 0).factory());
     }
 
-    // Tries to send messages with retry, after 5 secs assume bank has failed
-    private boolean sendWithRetry(BankService bank, List<Transaction> batch) {
-        long start = System.currentTimeMillis();
+    // Starts watching the members, suspected ones are evicted through evictFailedServer
+    public synchronized void start() {
+        if(failureDetector == null){
+            failureDetector = new FailureDetector(this);
+            failureDetector.start();
+        }
+    }
 
-        while(true){
+    // Stops the failure detector and the drain tasks, for a group that is done
+    public synchronized void shutdown() {
+        if(failureDetector != null){
+            failureDetector.stop();
+        }
+        executor.shutdownNow();
+    }
 
-            // Create a future and try to deliver the ordered batch (view) to the bank)
-            // each attempt times out after 2 seconds, and quits when  the passed time is 5s
-            Future<Boolean> future = executor.submit(() -> bank.deliverOrderedBatch(batch));
-            try{
-                // wait 2 secs for future to complete
-                boolean ack = future.get(2, TimeUnit.SECONDS);
-                if(ack){
-                    // If it returned then set its snapshot with its balance
-                    snapshot = bank.getBalance();
+    // Delivers the part of the log the member has not received yet, starting at its delivered high-water mark.
+    // The delta goes out in batches of at most deliveryBatchSize, up to deliveryWindow of them in flight at once,
+    // so a member far away is limited by bandwidth and not by one round trip per batch. The bank applies them in
+    // sequence order whatever order they arrive in. If every batch was answered but the bank is still behind (it
+    // had to drop one) the suffix from its high-water mark is resent.
+    // Returns true once the member is up to date, false if the bank could not be reached or is not ready yet.
+    // Failures are not judged here, that is up to the failure detector
+    private boolean deliver(BankServerInfo member) throws InterruptedException {
+        try (DeliveryWindow window = new DeliveryWindow(member, deliveryWindow, DELIVERY_DEADLINE_MS)) {
+            long next = member.getDeliveredSequence();
 
-                    // Return true == "ACK"
-                    return true;
+            while(group.isMember(member)){
+                // Fill the window, back-to-back
+                long tail = transactionLog.getTail();
+                while(window.hasRoom() && next < tail){
+                    long end = Math.min(tail, next + deliveryBatchSize);
+                    window.send(next, transactionLog.read(next, end));
+                    next = end;
                 }
-            }catch(TimeoutException e){
-                future.cancel(true);
-                System.out.println("[MDS] Timeout, retrying...");
-            }catch (Exception e){
-                System.out.println(e.getMessage());
-            }
 
-            if(System.currentTimeMillis() - start > 5000){
-                System.out.println("[MDS] Bank failed after 5s");
-                // BAnk failed NACK
-                return false;
+                if(window.isEmpty()){
+                    long delivered = member.getDeliveredSequence();
+                    if(delivered >= next){
+                        // Return true == "ACK"
+                        return true;
+                    }
+                    // Every batch was answered and the bank is still behind, it dropped one. Resend from its
+                    // high-water mark right away
+                    System.out.println("[MDS] Catching up bank ´" + member.getName() + "´ from " + delivered);
+                    next = delivered;
+                    continue;
+                }
+
+                DeliveryWindow.Reply reply = window.next();
+                if(reply == null){
+                    System.out.println("[MDS] Delivery to bank ´" + member.getName() + "´ missed its deadline");
+                    return false;
+                }
+                if(reply.failure() != null){
+                    System.out.println("[MDS] Delivery to bank ´" + member.getName() + "´ failed: " + reply.failure().getMessage());
+                    return false;
+                }
+                DeliveryAck ack = reply.ack();
+                if(ack.nextSequence() < 0){
+                    // Bank has not installed its state yet, it is retried after a moment
+                    return false;
+                }
+                digests.report(member.getName(), ack.appliedCounter(), ack.digest());
+                // Replies overtake each other, the high-water mark only moves forward
+                if(ack.nextSequence() > member.getDeliveredSequence()){
+                    member.setDeliveredSequence(ack.nextSequence());
+                }
+                member.advanceDurableSequence(ack.durableSequence());
             }
+            return false;
         }
     }
 
     // Hekper for evicting a failed bank, simply remove it from the group
-    private void evictFailedServer(String bankName){
-        group.leave(bankName);
-        System.out.println("[MDS] Evicted: " + bankName + " from group " + group.getGroupName());
+    void evictFailedServer(BankServerInfo member){
+        group.leave(member);
+        digests.forget(member.getName());
+        System.out.println("[MDS] Evicted: " + member.getName() + " from group " + group.getGroupName());
     }
 
-    // Broadcasts the passed transactions to all the group members of the coordinator
-    public void broadCastTransactions(List<Transaction> orderedTransactions)  {
-        // Early return if there are no members
-        if(group.getMembers().isEmpty()){
-            return;
+    // Starts delivering the ordered transactions to every member that is behind and returns right away.
+    // Each member is drained by at most one task at a time, so a slow or dead bank only holds up itself
+    public void broadCastTransactions()  {
+        for (BankServerInfo bankServerInfo : group.getMembers()) {
+            if (draining.add(bankServerInfo.getName())) {
+                executor.submit(() -> drain(bankServerInfo));
+            }
         }
+    }
 
-        // Get the count and create a latch to synchronize broadcast
-        int membersCount = group.getMembers().size();
-        CountDownLatch latch = new CountDownLatch(membersCount);
+    // Sends the member everything it has not received yet, then hands the member back to broadCastTransactions.
+    // An unreachable member is retried until it answers or the failure detector evicts it
+    private void drain(BankServerInfo bankServerInfo) {
+        try {
+            while (group.isMember(bankServerInfo)) {
+                // Try to send the members delta, return status
+                if (deliver(bankServerInfo)) {
+                    System.out.println("[MDS] ACK from bank ´" + bankServerInfo.getName() + "´");
+                    truncateLog();
+                    break;
+                }
+                Thread.sleep(RETRY_BACKOFF_MS);
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            draining.remove(bankServerInfo.getName());
+        }
 
-        // Iterate over all banks
-        for (BankServerInfo bankServerInfo : group.getMembers()) {
-            BankService bank = bankServerInfo.getBank();
-
-            // Submit jobs async to banks
-            executor.submit(() -> {
-                try {
-
-                    // Try to send batch, return status
-                    boolean success = sendWithRetry(bank, orderedTransactions);
-                    if (!success) {
-                        // If bank failed (timeout over 5s) evict bank
-                        evictFailedServer(bankServerInfo.getName());
-                    } else {
-                        System.out.println("[MDS] ACK from bank ´" + bankServerInfo.getName() + "´");
-
-                        // bank succeeded, get its snapshot, check if it exists and is changes, if it is changed
-                        // update the coordinators snapshot
-                        Pair tempSnapshot = bank.getBalance();
-                        if (tempSnapshot != null && !tempSnapshot.equals(snapshot)) {
-                            snapshot = tempSnapshot;
-                        }
-                    }
-                }catch(RemoteException e){
-                    e.printStackTrace();
-                } 
-                finally {
-                    // Always count down, even if exceptions occur
-                    latch.countDown();
+        // Transactions ordered while we were finishing up would otherwise wait for the next submit.
+        // The same goes for a bank that rejoined while its old incarnation was still being drained
+        if (group.isMember(bankServerInfo)
+                ? bankServerInfo.getDeliveredSequence() < transactionLog.getTail()
+                : group.isMember(bankServerInfo.getName())) {
+            broadCastTransactions();
+        }
+    }
+
+    // Adds a bank to the group, or adds it again after it was evicted, and tells it where it starts.
+    // The first bank of the group seeds the shadow state with its own state, pulled from it chunk by chunk, and the
+    // log starts at its order counter. A bank whose order counter the log still covers (a recovered or evicted bank)
+    // is caught up from the log suffix past it. Any other bank pulls a snapshot of the shadow state in chunks and
+    // gets the log suffix past the snapshot.
+    // Holding the ordering lock keeps the snapshot and the members starting sequence in step with the log. The seed is
+    // pulled without it, so a slow first bank does not hold up ordering, and if another first bank got its seed in
+    // meanwhile this one joins like any other. Joins of different banks need nothing else from each other, any
+    // number of them can be under way
+    public JoinReply join(BankService bank, String bankName, long orderCounter) throws RemoteException {
+        JoinReply reply = null;
+        Pair seed = null;
+        while(reply == null){
+            orderingLock.lock();
+            try {
+                if(shadowState == null && seed != null){
+                    shadowState = new ShadowState(seed);
+                    transactionLog.startAt(seed.getOrderCounter());
+                    reply = new JoinReply(seed.getOrderCounter(), -1, transactionLog.acknowledged(bankName));
+                    group.join(new BankServerInfo(bank, bankName, reply.startSequence()));
+                } else if(shadowState != null){
+                    reply = joinSeeded(bank, bankName, orderCounter);
                 }
-            });
+            } finally {
+                orderingLock.unlock();
+            }
+            if(reply == null){
+                seed = StateChunk.assemble(bank::getStateChunk);
+            }
         }
+
+        joinLock.lock();
         try {
-            // Await the latch before completing broadcast, ensure that all banks have received broadcast or failed
-            latch.await();    
-        } catch (Exception e) {
-            e.printStackTrace();
+            joined.signalAll();
+        } finally {
+            joinLock.unlock();
         }
+        return reply;
     }
 
-    // Simply sets the transaction order
-    public List<Transaction> setTransactionOrder(List<Transaction> transactions) {
-
-        // Iterate over transactions to order, could be more efficient with a map
-        for(Transaction tx: transactions){
-            
-            boolean alreadyIn = false;
+    // Joins a bank to a group that has a shadow state, called with the ordering lock held
+    private JoinReply joinSeeded(BankService bank, String bankName, long orderCounter) {
+        JoinReply reply;
+        if(orderCounter > 0 && orderCounter >= transactionLog.getBaseSequence() && orderCounter <= transactionLog.getTail()) {
+            System.out.println("[MDS] Catching up recovered bank ´" + bankName + "´ from " + orderCounter);
+            reply = new JoinReply(orderCounter, -1, transactionLog.acknowledged(bankName));
+        } else {
+            reply = new JoinReply(shadowState.orderCounter(), transfers.open(shadowState), transactionLog.acknowledged(bankName));
+        }
+        group.join(new BankServerInfo(bank, bankName, reply.startSequence()));
+        return reply;
+    }
 
-            // Check if transaction is already in view, if it is, set flag and break loop
-            for(Transaction viewTx: transactionView){
+    // Drops log segments every current member has made durable. Receiving a batch is not enough, a bank that
+    // crashes before logging it is caught up from here. New joiners start at the tail of the log
+    // (the shadow state is kept there), a recovered bank that needs something older gets a snapshot instead
+    private void truncateLog() {
+        long stableSequence = transactionLog.getTail();
+        for(BankServerInfo member : group.getMembers()){
+            stableSequence = Math.min(stableSequence, member.getDurableSequence());
+        }
+        transactionLog.truncate(stableSequence);
+    }
 
-                if(tx.uniqueId().equals(viewTx.uniqueId())){
-                    alreadyIn = true;
-                    break;
+    // Simply sets the transaction order, every transaction's global sequence is its position in the log.
+    // Newly ordered transactions are applied to the shadow state right away, in the same order.
+    // Returns the cumulative ack for the sending bank, its highest ordered counter
+    public long setTransactionOrder(List<Transaction> transactions) {
+        if(transactions.isEmpty()){
+            return -1;
+        }
+        orderingLock.lock();
+        try {
+            for(Transaction tx: transactions){
+                // The log skips transactions that have already been ordered (resent by the bank)
+                if(transactionLog.append(tx)){
+                    shadowState.apply(tx);
                 }
             }
-            // dont add to view if the transaction already exists
-            if(alreadyIn){
-                continue;
-            }
-
-            // Add the transaction to the view
-            transactionView.add(tx);
+            return transactionLog.acknowledged(transactions.get(0).originId());
+        } finally {
+            orderingLock.unlock();
         }
+    }
 
-        return transactionView; // Return the complete view after appending the transactions
+    // The sequence the next ordered transaction gets, everything before it is committed. Taken under the ordering
+    // lock so a batch being ordered right now is either entirely before it or entirely after it
+    public long committedSequence() {
+        orderingLock.lock();
+        try {
+            return transactionLog.getTail();
+        } finally {
+            orderingLock.unlock();
+        }
     }
 
-    // Simply removes the getSyncedBalance from the view (snapshot) by iterating over the view, used for
-    // ensuring that only the bank who wants to execute it in its local view gets is
-    public void removeGetSyncedBalance() {
-    for (int i = transactionView.size() - 1; i >= 0; i--) {
-        String command = transactionView.get(i).command().split(" ")[0];
-        if (command.equalsIgnoreCase("getsyncedbalance")) {
-            transactionView.remove(i);
+    // Blocks until the group has numberOfReplicas members, or at most timeoutMillis. Returns whether it has.
+    // Members are counted by name, so a bank that rejoins is still one bank and an evicted one no longer counts.
+    // Once the group has been full, banks that join later (or rejoin) find it open
+    public boolean awaitJoins(int numberOfReplicas, long timeoutMillis) throws InterruptedException {
+        joinLock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while(!filled && group.getMembers().size() < numberOfReplicas){
+                if(remaining <= 0){
+                    return false;
+                }
+                remaining = joined.awaitNanos(remaining);
+            }
+            filled = true;
+            return true;
+        } finally {
+            joinLock.unlock();
         }
     }
-}
+
+    // For getting the snapshots being transferred to joining banks
+    public SnapshotTransfers getTransfers() {
+        return transfers;
+    }
 
     // For getting the group of the coordinator
     public Group getGroup() {
         return group;
     }
 
-    // For getting the view of the coordinator
-    public List<Transaction> getTransactionView(){
-        return transactionView;
+    // For getting the digest tracker of the coordinator
+    public DigestTracker getDigests() {
+        return digests;
+    }
+
+    // For getting the ordering log of the coordinator
+    public OrderingLog getTransactionLog(){
+        return transactionLog;
     }
 }
@@ -0,0 +1,143 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Stresses the coordinators fan-out with growing groups and failure rates. Members are in-process stand-ins,
+// a failing delivery either throws right away or hangs until it is cancelled, like a bank that stopped answering.
+// Reports delivered tx/s next to the platform threads the JVM needed (peak live and newly started) and the CPU
+// time spent, which should stay flat however many members hang. Hanging calls are cancelled after
+// -Dmds.delivery.deadlineMs, keep it well below the run length to see members recover
+// Usage: BroadcastStressBenchmark [secondsPerRun]
+public class BroadcastStressBenchmark {
+
+    private static final int[] GROUP_SIZES = {4, 16, 64, 256};
+    private static final double[] FAILURE_RATES = {0.0, 0.1, 0.3};
+    private static final int BATCH_SIZE = 10;
+    private static final long SUBMIT_INTERVAL_MS = 1;
+
+    private static final CurrencyLedger LEDGER = new CurrencyLedger(Map.of("USD", 1.0));
+
+    private static final LongAdder delivered = new LongAdder();
+
+    // A bank that fails a share of its deliveries, half of them by hanging until the call is cancelled
+    private static class FlakyBank implements BankService {
+        private final double failureRate;
+        private long nextSequence = 0;
+
+        FlakyBank(double failureRate) {
+            this.failureRate = failureRate;
+        }
+
+        @Override
+        public DeliveryAck deliverOrderedBatch(long firstSequence, List<Transaction> orderedTransactions) throws RemoteException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < failureRate) {
+                if (random.nextBoolean()) {
+                    throw new RemoteException("Connection refused");
+                }
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    throw new RemoteException("Call cancelled", e);
+                }
+            }
+            // Only one drain task delivers to a member at a time
+            if (firstSequence > nextSequence) {
+                return new DeliveryAck(nextSequence, -1, 0, nextSequence);
+            }
+            long end = firstSequence + orderedTransactions.size();
+            if (end > nextSequence) {
+                delivered.add(end - nextSequence);
+                nextSequence = end;
+            }
+            return new DeliveryAck(nextSequence, -1, 0, nextSequence);
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public Pair getBalance() {
+            return new Pair(LEDGER, nextSequence);
+        }
+
+        @Override
+        public Pair getBalanceAt(long orderCounter) {
+            return getBalance();
+        }
+
+        @Override
+        public StateChunk getStateChunk(int firstId) {
+            return StateChunk.of(LEDGER, 0, firstId);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        // The MDS logs every failed delivery and ACK, keep that out of the measurement
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        console.printf("[BENCH] %d cores, batches of %d every %d ms, %ds per run%n",
+                Runtime.getRuntime().availableProcessors(), BATCH_SIZE, SUBMIT_INTERVAL_MS, seconds);
+        console.printf("[BENCH] %8s %9s %16s %14s %16s %10s%n",
+                "members", "failures", "delivered tx/s", "peak threads", "threads started", "cpu ms");
+
+        for (int size : GROUP_SIZES) {
+            for (double failureRate : FAILURE_RATES) {
+                TransactionCoordinator coordinator = new TransactionCoordinator(new Group("stress-" + size + "-" + failureRate));
+                coordinator.start();
+                for (int m = 0; m < size; m++) {
+                    coordinator.join(new FlakyBank(failureRate), "bank-" + m, 0);
+                }
+
+                delivered.reset();
+                threads.resetPeakThreadCount();
+                long startedBefore = threads.getTotalStartedThreadCount();
+                long cpuBefore = processCpuNanos();
+                long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+                long counter = 0;
+                while (System.nanoTime() < deadline) {
+                    List<Transaction> batch = new ArrayList<>(BATCH_SIZE);
+                    for (int i = 0; i < BATCH_SIZE; i++) {
+                        batch.add(Transaction.of("deposit USD 1", "submitter", counter++));
+                    }
+                    coordinator.setTransactionOrder(batch);
+                    coordinator.broadCastTransactions();
+                    Thread.sleep(SUBMIT_INTERVAL_MS);
+                }
+
+                long cpuMillis = (processCpuNanos() - cpuBefore) / 1_000_000;
+                console.printf("[BENCH] %8d %8.0f%% %16.0f %14d %16d %10d%n", size, failureRate * 100,
+                        delivered.sum() / (double) seconds, threads.getPeakThreadCount(),
+                        threads.getTotalStartedThreadCount() - startedBefore, cpuMillis);
+
+                // Stop the drains, hanging calls end at their deadline
+                for (BankServerInfo member : coordinator.getGroup().getMembers()) {
+                    coordinator.evictFailedServer(member);
+                }
+                coordinator.shutdown();
+            }
+        }
+
+        System.exit(0);
+    }
+
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return 0;
+    }
+}
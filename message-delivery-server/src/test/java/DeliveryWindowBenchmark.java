@@ -0,0 +1,122 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Measures how fast a backlog of ordered transactions reaches the members of a group for growing delivery windows.
+// Members are in-process stand-ins that take a fixed round trip to answer and buffer batches that overtake each
+// other, like the banks do. With a window of one every batch costs a round trip, wider windows keep the link busy
+// Usage: DeliveryWindowBenchmark [roundTripMillis] [transactions]
+public class DeliveryWindowBenchmark {
+
+    private static final int[] WINDOWS = {1, 2, 4, 8, 16};
+    private static final int MEMBERS = 3;
+    private static final int BATCH_SIZE = 256;
+
+    private static final CurrencyLedger LEDGER = new CurrencyLedger(Map.of("USD", 1.0));
+
+    // A bank at the other end of a slow link, it applies batches in sequence order
+    private static class DistantBank implements BankService {
+        private final long roundTripMillis;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeMap<Long, Integer> reorderBuffer = new TreeMap<>();
+        private volatile long nextSequence = 0;
+
+        DistantBank(long roundTripMillis) {
+            this.roundTripMillis = roundTripMillis;
+        }
+
+        @Override
+        public DeliveryAck deliverOrderedBatch(long firstSequence, List<Transaction> orderedTransactions) {
+            try {
+                Thread.sleep(roundTripMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lock.lock();
+            try {
+                reorderBuffer.merge(firstSequence, orderedTransactions.size(), Math::max);
+                Map.Entry<Long, Integer> next;
+                while ((next = reorderBuffer.firstEntry()) != null && next.getKey() <= nextSequence) {
+                    reorderBuffer.pollFirstEntry();
+                    nextSequence = Math.max(nextSequence, next.getKey() + next.getValue());
+                }
+                return new DeliveryAck(nextSequence, -1, 0, nextSequence);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public Pair getBalance() {
+            return new Pair(LEDGER, nextSequence);
+        }
+
+        @Override
+        public Pair getBalanceAt(long orderCounter) {
+            return getBalance();
+        }
+
+        @Override
+        public StateChunk getStateChunk(int firstId) {
+            return StateChunk.of(LEDGER, 0, firstId);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long roundTripMillis = args.length > 0 ? Long.parseLong(args[0]) : 5;
+        int transactions = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        // The MDS logs every ACK, keep that out of the measurement
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        console.printf("[BENCH] %d members, %d ms round trip, %d transactions in batches of %d%n",
+                MEMBERS, roundTripMillis, transactions, BATCH_SIZE);
+        console.printf("[BENCH] %8s %12s %18s%n", "window", "ms", "tx/s per member");
+
+        for (int window : WINDOWS) {
+            TransactionCoordinator coordinator = new TransactionCoordinator(new Group("window-" + window), window, BATCH_SIZE);
+            coordinator.start();
+            List<DistantBank> banks = new ArrayList<>();
+            for (int m = 0; m < MEMBERS; m++) {
+                DistantBank bank = new DistantBank(roundTripMillis);
+                banks.add(bank);
+                coordinator.join(bank, "bank-" + m, 0);
+            }
+
+            // Order the whole backlog first, then time how long it takes to reach every member
+            for (int i = 0; i < transactions; i += 1000) {
+                List<Transaction> batch = new ArrayList<>(1000);
+                for (int k = i; k < Math.min(transactions, i + 1000); k++) {
+                    batch.add(Transaction.of("deposit USD 1", "submitter", k));
+                }
+                coordinator.setTransactionOrder(batch);
+            }
+
+            long start = System.nanoTime();
+            coordinator.broadCastTransactions();
+            for (DistantBank bank : banks) {
+                while (bank.nextSequence < transactions) {
+                    Thread.sleep(1);
+                }
+            }
+            double millis = (System.nanoTime() - start) / 1e6;
+            console.printf("[BENCH] %8d %12.0f %18.0f%n", window, millis, transactions / (millis / 1000));
+
+            for (BankServerInfo member : coordinator.getGroup().getMembers()) {
+                coordinator.evictFailedServer(member);
+            }
+            coordinator.shutdown();
+        }
+
+        System.exit(0);
+    }
+}
@@ -0,0 +1,130 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Measures ordering and delivery throughput of one MDS with many groups active at the same time.
+// Banks are in-process stand-ins that acknowledge right away, so the numbers reflect the MDS and not RMI
+// Usage: MultiGroupBenchmark [secondsPerRun] [submitterThreads]
+public class MultiGroupBenchmark {
+
+    private static final int[] GROUP_COUNTS = {1, 10, 100, 500};
+    private static final int MEMBERS_PER_GROUP = 3;
+    private static final int BATCH_SIZE = 10;
+
+    // Every group holds a dollar account, the shadow states apply the deposits to it
+    private static final CurrencyLedger LEDGER = new CurrencyLedger(Map.of("USD", 1.0));
+
+    // Counts every transaction delivered to any bank
+    private static final LongAdder delivered = new LongAdder();
+
+    // A bank that accepts every delta and only tracks its high-water mark
+    private static class CountingBank implements BankService {
+        private long nextSequence = 0;
+
+        @Override
+        public synchronized DeliveryAck deliverOrderedBatch(long firstSequence, List<Transaction> orderedTransactions) {
+            if (firstSequence > nextSequence) {
+                return new DeliveryAck(nextSequence, -1, 0, nextSequence);
+            }
+            long end = firstSequence + orderedTransactions.size();
+            if (end > nextSequence) {
+                delivered.add(end - nextSequence);
+                nextSequence = end;
+            }
+            return new DeliveryAck(nextSequence, -1, 0, nextSequence);
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public synchronized Pair getBalance() {
+            return new Pair(LEDGER, nextSequence);
+        }
+
+        @Override
+        public Pair getBalanceAt(long orderCounter) {
+            return getBalance();
+        }
+
+        @Override
+        public StateChunk getStateChunk(int firstId) {
+            return StateChunk.of(LEDGER, 0, firstId);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int submitters = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+
+        // The MDS logs every broadcast and ACK, keep that out of the measurement
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        console.printf("[BENCH] %d cores, %d submitters, %d members per group, batches of %d, %ds per run%n",
+                Runtime.getRuntime().availableProcessors(), submitters, MEMBERS_PER_GROUP, BATCH_SIZE, seconds);
+        console.printf("[BENCH] %8s %16s %18s%n", "groups", "ordered tx/s", "delivered tx/s");
+
+        for (int groups : GROUP_COUNTS) {
+            ConcurrentHashMap<String, TransactionCoordinator> coordinators = new ConcurrentHashMap<>();
+            for (int g = 0; g < groups; g++) {
+                TransactionCoordinator coordinator = new TransactionCoordinator(new Group("group" + g));
+                coordinator.start();
+                for (int m = 0; m < MEMBERS_PER_GROUP; m++) {
+                    coordinator.join(new CountingBank(), "bank-" + g + "-" + m, 0);
+                }
+                coordinators.put(coordinator.getGroup().getGroupName(), coordinator);
+            }
+            // Members are joined directly above, the service never looks a bank up
+            MessageDeliveryServiceImpl service = new MessageDeliveryServiceImpl(coordinators, null);
+
+            delivered.reset();
+            LongAdder ordered = new LongAdder();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+            List<Thread> threads = new ArrayList<>();
+            for (int s = 0; s < submitters; s++) {
+                String origin = "submitter" + s;
+                Thread t = new Thread(() -> {
+                    long counter = 0;
+                    while (System.nanoTime() < deadline) {
+                        List<Transaction> batch = new ArrayList<>(BATCH_SIZE);
+                        for (int i = 0; i < BATCH_SIZE; i++) {
+                            batch.add(Transaction.of("deposit USD 1", origin, counter++));
+                        }
+                        try {
+                            service.sendTransactions("group" + ThreadLocalRandom.current().nextInt(groups), batch);
+                        } catch (RemoteException e) {
+                            throw new RuntimeException(e);
+                        }
+                        ordered.add(BATCH_SIZE);
+                    }
+                });
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+
+            // Let dissemination finish, delivered counts are per member
+            long drainDeadline = System.currentTimeMillis() + 10_000;
+            while (delivered.sum() < ordered.sum() * MEMBERS_PER_GROUP && System.currentTimeMillis() < drainDeadline) {
+                Thread.sleep(10);
+            }
+
+            console.printf("[BENCH] %8d %16.0f %18.0f%n", groups,
+                    ordered.sum() / (double) seconds, delivered.sum() / (double) seconds);
+            coordinators.values().forEach(TransactionCoordinator::shutdown);
+        }
+
+        System.exit(0);
+    }
+}
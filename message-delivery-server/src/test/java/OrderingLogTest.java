@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderingLogTest {
+
+    private static Transaction tx(String origin, long sequence) {
+        return Transaction.of(Transaction.Opcode.DEPOSIT, "USD", 1, origin, sequence);
+    }
+
+    private static OrderingLog logWith(int transactions) {
+        OrderingLog log = new OrderingLog();
+        for (int i = 0; i < transactions; i++) {
+            assertTrue(log.append(tx("bank-R1", i)));
+        }
+        return log;
+    }
+
+    @Test
+    void ordersEachTransactionOnce() {
+        OrderingLog log = new OrderingLog();
+
+        assertTrue(log.append(tx("bank-R1", 0)));
+        assertTrue(log.append(tx("bank-R2", 0)));
+        assertFalse(log.append(tx("bank-R1", 0)));
+        assertTrue(log.append(tx("bank-R1", 1)));
+        // A resend of an older one
+        assertFalse(log.append(tx("bank-R1", 0)));
+
+        assertEquals(3, log.getTail());
+        assertEquals(1, log.acknowledged("bank-R1"));
+        assertEquals(0, log.acknowledged("bank-R2"));
+        assertEquals(-1, log.acknowledged("bank-R3"));
+    }
+
+    @Test
+    void doesNotTakeATransactionThatLeavesAGap() {
+        OrderingLog log = logWith(2);
+
+        assertFalse(log.append(tx("bank-R1", 3)));
+
+        assertEquals(1, log.acknowledged("bank-R1"));
+        assertTrue(log.append(tx("bank-R1", 2)));
+        assertTrue(log.append(tx("bank-R1", 3)));
+    }
+
+    @Test
+    void readsInSequenceOrder() {
+        OrderingLog log = new OrderingLog();
+        Transaction first = tx("bank-R1", 0);
+        Transaction second = tx("bank-R2", 0);
+        log.append(first);
+        log.append(second);
+
+        List<Transaction> read = log.read(0, 10);
+
+        assertEquals(2, read.size());
+        assertSame(first, read.get(0));
+        assertSame(second, read.get(1));
+        assertEquals(List.of(second), log.read(1, 2));
+    }
+
+    @Test
+    void truncatesWholeSegmentsBelowTheStablePoint() {
+        OrderingLog log = logWith(3000);
+
+        log.truncate(2100);
+
+        // Segments hold 1024 transactions, the one 2100 falls in is kept
+        assertEquals(2048, log.getBaseSequence());
+        assertEquals(tx("bank-R1", 2048), log.read(2048, 2049).get(0));
+        assertThrows(IllegalStateException.class, () -> log.read(100, 200));
+        // Dropped transactions are still known as ordered
+        assertFalse(log.append(tx("bank-R1", 5)));
+        assertTrue(log.append(tx("bank-R1", 3000)));
+    }
+
+    @Test
+    void neverTruncatesPastTheTail() {
+        OrderingLog log = logWith(1500);
+
+        log.truncate(10_000);
+
+        assertEquals(1024, log.getBaseSequence());
+        assertEquals(476, log.read(1024, 1500).size());
+    }
+
+    @Test
+    void canStartPastZero() {
+        OrderingLog log = new OrderingLog();
+        log.startAt(500);
+
+        assertTrue(log.append(tx("bank-R1", 0)));
+
+        assertEquals(500, log.getBaseSequence());
+        assertEquals(501, log.getTail());
+        assertEquals(List.of(tx("bank-R1", 0)), log.read(500, 501));
+        assertThrows(IllegalStateException.class, () -> log.startAt(0));
+    }
+}
@@ -7,20 +7,22 @@
 # $4 = numberOfReplicas
 # $5 = currencyFileName
 # $6 = transactionFileName (optional; if empty => interactive mode)
+#
+# JAVA_OPTS is passed to the JVM, e.g. JAVA_OPTS="-Dtransport=nio" when the MDS runs the NIO transport
 
 JAR_PATH="bank-server/target/bank-server-1.0-SNAPSHOT.jar:common/target/common-1.0-SNAPSHOT.jar:message-delivery-server/target/message-delivery-server-1.0-SNAPSHOT.jar"
 
 if [ -z "$6" ]; then
     # Interactive mode (no transaction file)
     echo "[BANK] Running single interactive BankServer..."
-    java -cp "$JAR_PATH" BankServer "$1" "$2" "$3" "$4" "$5"
+    java $JAVA_OPTS -cp "$JAR_PATH" BankServer "$1" "$2" "$3" "$4" "$5"
 else
     # Batch mode (transaction file provided)
     echo "[BANK] Launching $4 BankServer replicas in batch mode..."
     for ((i=0; i< $4; i++)); do
         bankName="$1$((i+1))"  # append (i+1) to base name
         echo "[BANK] Starting $bankName..."
-        java -cp "$JAR_PATH" BankServer "$bankName" "$2" "$3" "$4" "$5" "$6" &
+        java $JAVA_OPTS -cp "$JAR_PATH" BankServer "$bankName" "$2" "$3" "$4" "$5" "$6" &
     done
 
     # Optional: wait for all background processes to finish
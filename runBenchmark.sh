@@ -0,0 +1,13 @@
+#!/bin/bash
+
+# Arguments:
+# $1 = benchmark class (e.g. MultiGroupBenchmark)
+# remaining arguments are passed on to the benchmark
+#
+# The benchmarks live with the tests, build them with `mvn package` (or `mvn test-compile`) first
+
+JAR_PATH="bank-server/target/bank-server-1.0-SNAPSHOT.jar:common/target/common-1.0-SNAPSHOT.jar:message-delivery-server/target/message-delivery-server-1.0-SNAPSHOT.jar"
+BENCH_PATH="bank-server/target/test-classes:common/target/test-classes:message-delivery-server/target/test-classes"
+
+echo "[BENCH] Running $1..."
+java -cp "$JAR_PATH:$BENCH_PATH" "$@"
@@ -1,4 +1,6 @@
 #!/bin/bash
 
-java -cp "message-delivery-server/target/message-delivery-server-1.0-SNAPSHOT.jar:common/target/common-1.0-SNAPSHOT.jar:bank-server/target/bank-server-1.0-SNAPSHOT.jar" MessageDeliveryServer
+# Uses RMI through the rmiregistry on localhost:1099 by default.
+# JAVA_OPTS="-Dtransport=nio" switches to the NIO transport, the banks have to be started with the same option
+java $JAVA_OPTS -cp "message-delivery-server/target/message-delivery-server-1.0-SNAPSHOT.jar:common/target/common-1.0-SNAPSHOT.jar:bank-server/target/bank-server-1.0-SNAPSHOT.jar" MessageDeliveryServer
 